@@ -0,0 +1,11 @@
+import java.io.File;
+
+interface Audio {
+    void playTone(int freq, int duration, int vol);
+
+    void playTone(int freq, int duration);
+
+    void playSample(File file, int vol);
+
+    void playSample(byte[] data, int offset, int length, int rate, int vol); // 8-bit unsigned PCM
+} // end interface
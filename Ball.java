@@ -0,0 +1,415 @@
+import java.util.Random;
+
+import static java.lang.Math.*;
+
+class Ball {
+    private static final int POLL_PERIOD = 5; // ms
+    private static final int SETTLE_PERIOD = 20; // ms
+    private static final int CLEAR_DISTANCE = 50; // tacho
+    private static final int HOME_SPEED = 100; // degrees / sec
+    private static final float HOME_MARGIN = 1; // cm
+    private int vel; // degrees / sec
+    private int dirX; // unit vector of travel, X part, Q16.16
+    private int dirY; // unit vector of travel, Y part, Q16.16
+    private final float planeLengthX; // Tacho X-direction:	940 (32.76cm)	28.7 Tacho / cm
+    private final float planeLengthY; // Tacho Y-direction:	856 (28.08cm)	30.5 Tacho / cm
+    private final Motor motorX;
+    private final Motor motorY;
+    private final Clock clock;
+    private final MotionController motion;
+    private final MotionTask mover; // runs calibration, homing and centering
+    private final Runnable goToMiddle = new Runnable() {
+        public void run() {
+            runGoToMiddle();
+        }
+    };
+    private final Random random; // kick-off angles
+    private float kickOffAngle; // degrees from the X-axis, last kick-off
+    private LatencyHistogram setVelTime = LatencyHistogram.DISCARD;
+    private LatencyHistogram hitPadTime = LatencyHistogram.DISCARD;
+    private float tachoPrCmX;
+    private float tachoPrCmY;
+
+    public Ball(float planeLengthX, float planeLengthY,
+                Motor motorX, Motor motorY, Clock clock, Random random) {
+        this.planeLengthX = planeLengthX;
+        this.planeLengthY = planeLengthY;
+        this.motorX = motorX;
+        this.motorY = motorY;
+        this.clock = clock;
+        this.motion = new MotionController(motorX, motorY);
+        this.mover = new MotionTask(clock);
+        this.random = random;
+    }
+
+    /* Ends the motion thread */
+    public void close() {
+        mover.close();
+    }
+
+    public int getXPos() {
+        return motorX.getTachoCount();
+    }
+
+    public int getYPos() {
+        return motorY.getTachoCount();
+    }
+
+    /* Tacho / sec, Q16.16 */
+    public int getXVel() {
+        return vel * dirX;
+    }
+
+    /* Tacho / sec, Q16.16 */
+    public int getYVel() {
+        return vel * dirY;
+    }
+
+    public int getVel() {
+        return vel;
+    }
+
+    public float getTPCX() {
+        return tachoPrCmX;
+    }
+
+    public float getTPCY() {
+        return tachoPrCmY;
+    }
+
+    private void setXPos(int newXPos) {
+        motorX.setSpeed(150);
+        motorX.rotateTo(newXPos, true);
+    }
+
+    private void setYPos(int newYPos) {
+        motorY.setSpeed(150);
+        motorY.rotateTo(newYPos, true);
+    }
+
+    /* Times setVel and hitPad from now on */
+    public void instrument(LatencyHistogram setVel, LatencyHistogram hitPad) {
+        this.setVelTime = setVel;
+        this.hitPadTime = hitPad;
+    }
+
+    public void setVel(int vel) {
+        long start = clock.nanoTime();
+        this.vel = vel;
+        motion.setVelocity(Fixed.round(getXVel()), Fixed.round(getYVel()));
+        setVelTime.record(clock.nanoTime() - start);
+    }
+
+    /* Travel at offset degrees from straight along the X-axis, towards +X or -X */
+    private void setDirection(boolean towardsPlusX, double offset) {
+        int i = TrigTable.index(offset);
+        dirX = towardsPlusX ? TrigTable.COS[i] : -TrigTable.COS[i];
+        dirY = towardsPlusX ? TrigTable.SIN[i] : -TrigTable.SIN[i];
+    }
+
+    public void hitWall() {
+        dirY = -dirY;
+        setVel(vel);
+    }
+
+    /* Both in tacho, Q16.16 */
+    public void hitPad(int posOnPad, int padLength) {
+        long start = clock.nanoTime();
+		/* -70 degrees at the pad's top end to 70 at its bottom, in table steps rounded half up */
+        long scaled = 140L * TrigTable.STEPS_PER_DEGREE * posOnPad + padLength / 2;
+        int steps = (int) ((scaled >= 0) ? scaled / padLength : -((-scaled + padLength - 1) / padLength));
+        boolean isRight = (dirX > 0);
+
+		/* Angle 180 - newAngle: back towards -X, same vertical sense as newAngle */
+        int i = TrigTable.indexOfSteps(steps - 70 * TrigTable.STEPS_PER_DEGREE);
+        dirX = isRight ? -TrigTable.COS[i] : TrigTable.COS[i];
+        dirY = TrigTable.SIN[i];
+        hitPadTime.record(clock.nanoTime() - start);
+    }
+
+
+    private static boolean interrupted() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    private void stopWhenStalled() {
+        boolean x = true;
+        boolean y = true;
+
+        while ((x || y) && !interrupted()) {
+            if (x && motorX.isStalled()) {
+                motorX.stop();
+                x = false;
+            }
+            if (y && motorY.isStalled()) {
+                motorY.stop();
+                y = false;
+            }
+            clock.sleep(POLL_PERIOD);
+        }
+    }
+
+    /* Waits until neither axis turns between two polls, at most maxMs */
+    private void waitUntilSettled(int maxMs) {
+        long deadline = clock.nanoTime() + maxMs * 1000000L;
+        int lastX = getXPos();
+        int lastY = getYPos();
+        while (clock.nanoTime() < deadline && !interrupted()) {
+            clock.sleep(SETTLE_PERIOD);
+            int x = getXPos();
+            int y = getYPos();
+            if (x == lastX && y == lastY) {
+                return;
+            }
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    /* Waits until both axes are distance tacho past zero, at most maxMs */
+    private void waitUntilClear(int distance, int maxMs) {
+        long deadline = clock.nanoTime() + maxMs * 1000000L;
+        while (clock.nanoTime() < deadline && !interrupted()) {
+            if (getXPos() >= distance && getYPos() >= distance) {
+                return;
+            }
+            clock.sleep(POLL_PERIOD);
+        }
+    }
+
+    /*
+     * Finds both end stops. The fixed delays of the first version are now
+     * upper bounds: each step goes on as soon as the motors have settled or
+     * left the lower stop far enough for the sensitive stall threshold.
+     */
+    private void runCalibrate() {
+        motion.forget();
+        motorX.setSpeed(50);
+        motorY.setSpeed(50);
+        motorX.setStallThreshold(5, 1);
+        motorY.setStallThreshold(5, 1);
+
+        motorX.backward();
+        motorY.backward();
+
+        stopWhenStalled();
+
+        motorX.flt();
+        motorY.flt();
+
+        waitUntilSettled(500);
+        motorX.resetTachoCount();
+        motorY.resetTachoCount();
+        motorX.stop();
+        motorY.stop();
+        waitUntilSettled(1000);
+        if (interrupted()) {
+            return;
+        }
+
+        motorX.forward();
+        motorY.forward();
+
+        waitUntilClear(CLEAR_DISTANCE, 3000);
+        motorX.setStallThreshold(2, 1);
+        motorY.setStallThreshold(2, 1);
+
+        stopWhenStalled();
+
+        motorX.flt();
+        motorY.flt();
+
+        waitUntilSettled(500);
+        motorX.stop();
+        motorY.stop();
+        tachoPrCmX = getXPos() / planeLengthX;
+        tachoPrCmY = getYPos() / planeLengthY;
+        motorX.setStallThreshold(50, 50);
+        motorY.setStallThreshold(50, 50);
+        waitUntilSettled(100);
+    } // end method
+
+    public MotionTask calibrateAsync() {
+        mover.begin(new Runnable() {
+            public void run() {
+                runCalibrate();
+            }
+        });
+        return mover;
+    }
+
+    public void calibrate() {
+        calibrateAsync().await();
+    }
+
+    /*
+     * Fast start from a cached calibration: home against the lower stops
+     * only, run across to just short of where the cache puts the upper
+     * stops, and creep the rest of the way. Returns false, leaving the
+     * calibration unset, when an upper stop is not within HOME_MARGIN of
+     * the cached one.
+     */
+    private boolean runHome(float cachedTPCX, float cachedTPCY) {
+        motion.forget();
+        motorX.setSpeed(HOME_SPEED);
+        motorY.setSpeed(HOME_SPEED);
+        motorX.setStallThreshold(5, 1);
+        motorY.setStallThreshold(5, 1);
+
+        motorX.backward();
+        motorY.backward();
+
+        stopWhenStalled();
+
+        motorX.flt();
+        motorY.flt();
+
+        waitUntilSettled(500);
+        motorX.resetTachoCount();
+        motorY.resetTachoCount();
+        motorX.stop();
+        motorY.stop();
+
+        int endX = round(planeLengthX * cachedTPCX);
+        int endY = round(planeLengthY * cachedTPCY);
+        int marginX = round(HOME_MARGIN * cachedTPCX);
+        int marginY = round(HOME_MARGIN * cachedTPCY);
+        setXPos(endX - marginX);
+        setYPos(endY - marginY);
+
+        boolean x = true;
+        boolean y = true;
+        while ((x || y) && !interrupted()) {
+            if (motorX.isStalled() || motorY.isStalled()) {
+                motorX.stop();
+                motorY.stop();
+                return false; // Upper stop closer than cached
+            }
+            if (x && getXPos() >= endX - marginX - 2) {
+                x = false;
+            }
+            if (y && getYPos() >= endY - marginY - 2) {
+                y = false;
+            }
+            clock.sleep(POLL_PERIOD);
+        }
+
+        motorX.setSpeed(50);
+        motorY.setSpeed(50);
+        motorX.forward();
+        motorY.forward();
+
+        x = true;
+        y = true;
+        while ((x || y) && !interrupted()) {
+            if (x && motorX.isStalled()) {
+                motorX.stop();
+                x = false;
+            }
+            if (y && motorY.isStalled()) {
+                motorY.stop();
+                y = false;
+            }
+            if ((x && getXPos() > endX + marginX) || (y && getYPos() > endY + marginY)) {
+                motorX.stop();
+                motorY.stop();
+                return false; // Upper stop further away than cached
+            }
+            clock.sleep(POLL_PERIOD);
+        }
+
+        motorX.flt();
+        motorY.flt();
+
+        waitUntilSettled(500);
+        motorX.stop();
+        motorY.stop();
+        motorX.setStallThreshold(50, 50);
+        motorY.setStallThreshold(50, 50);
+        if (interrupted()) {
+            return false;
+        }
+        tachoPrCmX = getXPos() / planeLengthX;
+        tachoPrCmY = getYPos() / planeLengthY;
+        return true;
+    } // end method
+
+    public boolean home(final float cachedTPCX, final float cachedTPCY) {
+        final boolean[] homed = new boolean[1];
+        mover.begin(new Runnable() {
+            public void run() {
+                homed[0] = runHome(cachedTPCX, cachedTPCY);
+            }
+        });
+        return mover.await() && homed[0];
+    }
+
+    private void runGoToMiddle() {
+        int middleX = round(planeLengthX * tachoPrCmX / 2); // Length to center in tacho for X-axis
+        int middleY = round(planeLengthY * tachoPrCmY / 2); // Length to center in tacho for Y-axis
+
+        motion.forget();
+        motorX.stop();
+        motorY.stop();
+
+        setXPos(middleX);
+        setYPos(middleY);
+
+		/* Wait for ball to reach the middle */
+        boolean x = true;
+        boolean y = true;
+        while ((x || y) && !interrupted()) {
+            int xPos = getXPos();
+            int yPos = getYPos();
+            if (xPos >= middleX - 2 && xPos <= middleX + 2) {
+                x = false;
+            }
+            if (yPos >= middleY - 2 && yPos <= middleY + 2) {
+                y = false;
+            }
+            clock.sleep(POLL_PERIOD);
+        }
+    } // end method
+
+    public MotionTask goToMiddleAsync() {
+        mover.begin(goToMiddle);
+        return mover;
+    }
+
+    public void goToMiddle() {
+        goToMiddleAsync().await();
+    }
+
+    public void kickOff(int scorer) {
+		/* Selects a side based on who scored */
+        int direction;
+        switch (scorer) {
+            case 0:
+                direction = random.nextInt(2) * 180;
+                break;
+            case 1:
+                direction = 180;
+                break;
+            case 2:
+                direction = 0;
+                break;
+            default:
+                throw new IllegalArgumentException("Illegal input value.");
+        }
+
+		/* Selects a random angle between 70 and -70 towards the side selected*/
+        double maxAngle = direction + 70;
+        double minAngle = direction - 70;
+        double startAngle;
+        do {
+            startAngle = random.nextGaussian() * 30 + direction;
+        } while (startAngle > maxAngle || startAngle < minAngle);
+
+        kickOffAngle = (float) startAngle;
+        setDirection(direction == 0, startAngle - direction);
+    }
+
+    public float getKickOffAngle() {
+        return kickOffAngle;
+    }
+} // end class
@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Plays many headless matches on the simulated brick, as fast as the CPU
+ * allows, and reports throughput and how long the rallies last. Each match
+ * gets its own seed from the batch seed, so a batch is repeatable and any
+ * single match can be replayed with Pong --sim <seed>.
+ *
+ *   BatchSimulator [--matches n] [--seed s] [--threads n]
+ *                  [--ball-speed v] [--increment v] [--pad-tol v] [--wall-tol v]
+ *                  [--players tracking|expert|sweep]
+ */
+class BatchSimulator {
+    public static void main(String[] args) throws Exception {
+        int matches = 100;
+        long seed = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String players = "tracking";
+        GameSettings settings = new GameSettings();
+        settings.dumpMetrics = false; // thousands of matches would bury the report
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if (args[i].equals("--matches")) {
+                matches = Integer.parseInt(value);
+            } else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(value);
+            } else if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(value);
+            } else if (args[i].equals("--ball-speed")) {
+                settings.ballSpeed = Integer.parseInt(value);
+            } else if (args[i].equals("--increment")) {
+                settings.increment = Integer.parseInt(value);
+            } else if (args[i].equals("--pad-tol")) {
+                settings.padTol = Integer.parseInt(value);
+            } else if (args[i].equals("--wall-tol")) {
+                settings.wallTol = Integer.parseInt(value);
+            } else if (args[i].equals("--players")) {
+                players = value;
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        System.out.println("Playing " + matches + " matches on " + threads + " threads: ball speed "
+                + settings.ballSpeed + ", increment " + settings.increment + ", pad tolerance "
+                + settings.padTol + ", wall tolerance " + settings.wallTol + ", " + players + " players");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<MatchResult>> results = new ArrayList<Future<MatchResult>>();
+        Random seeds = new Random(seed);
+        long start = System.nanoTime();
+        for (int i = 0; i < matches; i++) {
+            results.add(pool.submit(new MatchRun(seeds.nextLong(), players, settings)));
+        }
+        Report report = new Report();
+        for (Future<MatchResult> result : results) {
+            report.add(result.get());
+        }
+        long realNanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        report.print(matches, realNanos);
+        System.exit(0);
+    } // end main
+
+    static PadController player(String kind, long seed, int player) {
+        if (kind.equals("tracking")) {
+            return SimulatedHardware.trackingPlayer(seed, player);
+        } else if (kind.equals("expert")) {
+            return new TrackingPadController(new Random(seed + player).nextLong(), 60, 0.5f);
+        } else if (kind.equals("sweep")) {
+            return new SweepPadController(3, player * 0.25f);
+        }
+        throw new IllegalArgumentException("Unknown players " + kind);
+    }
+} // end class
+
+
+/* One match on its own simulated brick; the pool thread owns its clock */
+class MatchRun implements Callable<MatchResult> {
+    private final long seed;
+    private final String players;
+    private final GameSettings settings;
+
+    public MatchRun(long seed, String players, GameSettings settings) {
+        this.seed = seed;
+        this.players = players;
+        this.settings = settings;
+    }
+
+    public MatchResult call() {
+        SimulatedHardware hardware = new SimulatedHardware(seed, 0,
+                BatchSimulator.player(players, seed, 1), BatchSimulator.player(players, seed, 2));
+        MatchStats stats = new MatchStats(MatchStats.maxPoints(1, settings.maxScore));
+        Pong.play(hardware, null, settings, stats);
+        return new MatchResult(seed, stats, hardware.clock().nanoTime());
+    }
+} // end class
+
+
+class MatchResult {
+    final long seed;
+    final MatchStats stats;
+    final long virtualNanos;
+
+    MatchResult(long seed, MatchStats stats, long virtualNanos) {
+        this.seed = seed;
+        this.stats = stats;
+        this.virtualNanos = virtualNanos;
+    }
+} // end class
+
+
+/* Totals over a batch */
+class Report {
+    private static final int HISTOGRAM_WIDTH = 50; // characters for the longest bar
+
+    private int[] rallyCounts = new int[16]; // points that lasted i pad hits
+    private int points;
+    private long hits;
+    private final int[] matchesWon = new int[3];
+    private long virtualNanos;
+    private long longestSeed;
+    private int longestRally = -1;
+
+    public void add(MatchResult result) {
+        MatchStats stats = result.stats;
+        for (int i = 0; i < stats.getRallies(); i++) {
+            int rally = stats.getRally(i);
+            if (rally >= rallyCounts.length) {
+                int[] grown = new int[Math.max(rally + 1, rallyCounts.length * 2)];
+                System.arraycopy(rallyCounts, 0, grown, 0, rallyCounts.length);
+                rallyCounts = grown;
+            }
+            rallyCounts[rally]++;
+            points++;
+            hits += rally;
+            if (rally > longestRally) {
+                longestRally = rally;
+                longestSeed = result.seed;
+            }
+        }
+        matchesWon[1] += stats.getMatchesWon(1);
+        matchesWon[2] += stats.getMatchesWon(2);
+        virtualNanos += result.virtualNanos;
+    }
+
+    private int percentile(double p) {
+        int rank = (int) Math.ceil(p * points);
+        int seen = 0;
+        for (int i = 0; i < rallyCounts.length; i++) {
+            seen += rallyCounts[i];
+            if (seen >= rank) {
+                return i;
+            }
+        }
+        return longestRally;
+    }
+
+    public void print(int matches, long realNanos) {
+        double realSec = realNanos / 1e9;
+        double virtualSec = virtualNanos / 1e9;
+        System.out.printf("%d matches in %.1f s: %.2f matches / s, %.0f s of play (%.0fx real time)%n",
+                matches, realSec, matches / realSec, virtualSec, virtualSec / realSec);
+        System.out.println("Player 1 won " + matchesWon[1] + ", player 2 won " + matchesWon[2]);
+        if (points == 0) {
+            return;
+        }
+        System.out.printf("%.1f points per match; rally length in pad hits: mean %.2f, median %d, p90 %d, "
+                        + "p99 %d, max %d (seed %d)%n",
+                points / (double) matches, hits / (double) points, percentile(0.5), percentile(0.9),
+                percentile(0.99), longestRally, longestSeed);
+
+        int most = 0;
+        for (int i = 0; i <= longestRally; i++) {
+            most = Math.max(most, rallyCounts[i]);
+        }
+        for (int i = 0; i <= longestRally; i++) {
+            StringBuilder bar = new StringBuilder();
+            for (int j = 0; j < (long) rallyCounts[i] * HISTOGRAM_WIDTH / most; j++) {
+                bar.append('#');
+            }
+            System.out.printf("%3d | %-" + HISTOGRAM_WIDTH + "s %d%n", i, bar, rallyCounts[i]);
+        }
+    }
+} // end class
@@ -0,0 +1,75 @@
+import java.io.PrintStream;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * How long one thread's jobs may take, and how often they took longer.
+ * Written by the one thread that owns it, which takes it in instrument()
+ * before it starts. Threads that do real I/O time their jobs with
+ * System.nanoTime, since the I/O is real even in a simulation.
+ */
+class Budget {
+    final String name;
+    final long limit; // ns per job
+    private final CoreBudget owner; // null if not assigned
+    private final boolean yields; // held back while the game is close to a contact
+    private long jobs;
+    private long overruns;
+    private long worst; // ns
+
+    public Budget(String name, long limit) {
+        this(name, limit, null, false);
+    }
+
+    Budget(String name, long limit, CoreBudget owner, boolean yields) {
+        this.name = name;
+        this.limit = limit;
+        this.owner = owner;
+        this.yields = yields;
+    }
+
+    /*
+     * Call before a job. For a thread that yields, waits while the game is
+     * close to a contact, but no longer than MAX_DEFER_MS; on the clock, or
+     * in real time if clock is null.
+     */
+    public void defer(Clock clock) {
+        if (!yields) {
+            return;
+        }
+        for (int ms = 0; ms < CoreBudget.MAX_DEFER_MS && owner.isContactNear(); ms++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (clock != null) {
+                clock.sleep(1);
+            } else {
+                LockSupport.parkNanos(1000000);
+            }
+        }
+    }
+
+    public void check(long nanos) {
+        jobs++;
+        if (nanos > limit) {
+            overruns++;
+        }
+        if (nanos > worst) {
+            worst = nanos;
+        }
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public void reset() {
+        jobs = 0;
+        overruns = 0;
+        worst = 0;
+    }
+
+    /* One line, times in milliseconds */
+    public void print(PrintStream out) {
+        out.printf("%-22s %8d %8d %9.2f %9.2f%n", name, jobs, overruns, worst / 1e6, limit / 1e6);
+    }
+} // end class
@@ -0,0 +1,80 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/*
+ * The last calibration, kept in a small file on the brick. An entry only
+ * counts for the build it was measured on (the fingerprint) and for a
+ * week; after that the next start calibrates in full again. A missing or
+ * unreadable file is the same as no entry, and a failed write is ignored.
+ */
+class CalibrationCache {
+    private static final long MAX_AGE = 7L * 24 * 60 * 60 * 1000; // ms
+
+    private final File file;
+    private final String fingerprint;
+
+    /* file may be null to keep nothing */
+    public CalibrationCache(File file, String fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    /* {tachoPrCmX, tachoPrCmY}, or null when there is no usable entry */
+    public float[] load() {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        Properties entry = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                entry.load(in);
+            } finally {
+                in.close();
+            }
+            if (!fingerprint.equals(entry.getProperty("fingerprint"))) {
+                return null;
+            }
+            long age = System.currentTimeMillis() - Long.parseLong(entry.getProperty("timestamp"));
+            if (age < 0 || age > MAX_AGE) {
+                return null;
+            }
+            float x = Float.parseFloat(entry.getProperty("tachoPrCmX"));
+            float y = Float.parseFloat(entry.getProperty("tachoPrCmY"));
+            if (!(x > 0) || !(y > 0)) {
+                return null;
+            }
+            return new float[]{x, y};
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) { // missing or malformed value
+            return null;
+        }
+    }
+
+    public void save(float tachoPrCmX, float tachoPrCmY) {
+        if (file == null) {
+            return;
+        }
+        Properties entry = new Properties();
+        entry.setProperty("fingerprint", fingerprint);
+        entry.setProperty("timestamp", Long.toString(System.currentTimeMillis()));
+        entry.setProperty("tachoPrCmX", Float.toString(tachoPrCmX));
+        entry.setProperty("tachoPrCmY", Float.toString(tachoPrCmY));
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                entry.store(out, "Pong calibration");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            // Next start calibrates in full
+        }
+    }
+} // end class
@@ -0,0 +1,21 @@
+interface Clock {
+    long nanoTime();
+
+    void sleep(long ms);
+
+    /*
+     * Call just after starting a thread that sleeps on this clock. A
+     * simulated clock then lets it run before moving time on.
+     */
+    void adopt(Thread thread);
+
+    /* Parks the calling thread, as LockSupport.park, until unpark or an interrupt */
+    void park(Object blocker);
+
+    /*
+     * Wakes a thread parked with park. A simulated clock then lets it run
+     * until it parks or sleeps again before moving time on, so its work
+     * takes the virtual time it would take on the brick.
+     */
+    void unpark(Thread thread);
+} // end interface
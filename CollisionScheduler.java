@@ -0,0 +1,83 @@
+/*
+ * Paces ballLoop. From the ball's position and velocity it predicts when the
+ * ball reaches the next pad line or wall and sleeps until shortly before
+ * that, then samples at a fixed rate until the contact has been handled.
+ */
+class CollisionScheduler {
+    private static final long TIGHT_PERIOD_MS = 2; // sample period near a contact
+    private static final long GUARD_MS = 40; // wake at least this long before a contact
+    private static final long MAX_SLEEP_MS = 250; // re-predict at least this often
+
+    private final Clock clock;
+    private final int minX; // tacho, Q16.16, pad line player 1
+    private final int maxX; // tacho, Q16.16, pad line player 2
+    private final int minY; // tacho, Q16.16, upper wall
+    private final int maxY; // tacho, Q16.16, lower wall
+    private long predictedContact = Long.MAX_VALUE; // clock nanos
+    private long nextTick;
+    private boolean nearContact; // the last wait sampled at the fixed rate
+
+    public CollisionScheduler(Clock clock, float minX, float maxX, float minY, float maxY) {
+        this.clock = clock;
+        this.minX = Fixed.fromDouble(minX);
+        this.maxX = Fixed.fromDouble(maxX);
+        this.minY = Fixed.fromDouble(minY);
+        this.maxY = Fixed.fromDouble(maxY);
+    }
+
+    /* Nanoseconds until a position moving at vel leaves [min, max] */
+    private static long timeToEdge(int pos, int vel, int min, int max) {
+        int p = Fixed.fromInt(pos);
+        if (vel > 0) {
+            return Fixed.nanosToCover(Math.max(0, max - p), vel);
+        } else if (vel < 0) {
+            return Fixed.nanosToCover(Math.max(0, p - min), -vel);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /* Predicts the next contact for a ball at (x, y) tacho moving at (xVel, yVel) Q16.16 tacho / sec */
+    public long predict(int x, int y, int xVel, int yVel) {
+        long t = Math.min(timeToEdge(x, xVel, minX, maxX), timeToEdge(y, yVel, minY, maxY));
+        long now = clock.nanoTime();
+        predictedContact = (t == Long.MAX_VALUE) ? Long.MAX_VALUE : now + t;
+        return predictedContact;
+    }
+
+    public long getPredictedContact() {
+        return predictedContact;
+    }
+
+    public boolean isNearContact() {
+        return nearContact;
+    }
+
+    /*
+     * Blocks until ballLoop should look at the ball again. Far from a contact
+     * it sleeps most of the predicted time away, keeping a guard that grows
+     * with the horizon since the motors never track their speed exactly.
+     */
+    public void waitForNextTick(int x, int y, int xVel, int yVel) {
+        predict(x, y, xVel, yVel);
+        long now = clock.nanoTime();
+        long untilContact = predictedContact - now;
+        long guard = GUARD_MS * 1000000 + untilContact / 4;
+
+        nearContact = (untilContact <= guard);
+        if (!nearContact) {
+            long sleepMs = Math.min((untilContact - guard) / 1000000, MAX_SLEEP_MS);
+            clock.sleep(sleepMs);
+            nextTick = clock.nanoTime();
+            return;
+        }
+
+		/* Close to a contact: sample at a fixed rate */
+        nextTick += TIGHT_PERIOD_MS * 1000000;
+        long waitMs = (nextTick - now) / 1000000;
+        if (waitMs > 0) {
+            clock.sleep(waitMs);
+        } else if (waitMs < -TIGHT_PERIOD_MS) {
+            nextTick = now; // fell behind, don't try to catch up
+        }
+    }
+} // end class
@@ -0,0 +1,73 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Shares the brick's single core between the game and its workers. Every
+ * thread gets the priority of its subsystem, ranked so that a collision
+ * decision is never kept waiting by a sensor read, a sensor read never by
+ * a sound, and a sound never by the screen; the recorder's file writes
+ * and the telemetry come last. Each thread also gets a budget for one of
+ * its jobs, and the overruns are reported with the match metrics.
+ *
+ * The priorities are only advisory: the JVM on the brick passes them on
+ * to Linux only when started with -XX:ThreadPriorityPolicy=1 as root, and
+ * the leJOS menu starts programs without it. So the ordering that matters
+ * is also kept by hand. While the game thread samples close to a contact
+ * it says so with contactNear, and the sound, screen, recording and
+ * telemetry threads hold their next job back in Budget.defer until the
+ * contact has been handled.
+ */
+class CoreBudget {
+    static final int GAME = 0; // one tick: read, decide, react
+    static final int SENSORS = 1; // one sample
+    static final int AUDIO = 2; // from a sound being due to it starting
+    static final int DISPLAY = 3; // one live view frame
+    static final int RECORDING = 4; // one write to the file
+    static final int TELEMETRY = 5; // one write to the network
+
+    private static final int[] PRIORITY = {Thread.MAX_PRIORITY, Thread.MAX_PRIORITY - 1,
+            Thread.NORM_PRIORITY + 1, Thread.NORM_PRIORITY - 1, Thread.MIN_PRIORITY, Thread.MIN_PRIORITY};
+    private static final long[] LIMIT = {1000000, 5000000, 50000000, 30000000, 200000000, 50000000}; // ns
+
+    static final int MAX_DEFER_MS = 150; // longer than the closest approach to a contact lasts
+
+    private final List<Budget> budgets = new ArrayList<Budget>();
+    private volatile boolean contactNear;
+
+    /* Gives thread the subsystem's priority and a budget of its own; call before it starts */
+    public Budget assign(Thread thread, int subsystem, String name) {
+        thread.setPriority(Math.min(PRIORITY[subsystem], thread.getThreadGroup().getMaxPriority()));
+        Budget budget = new Budget(name, LIMIT[subsystem], this, subsystem >= AUDIO);
+        synchronized (budgets) {
+            budgets.add(budget);
+        }
+        return budget;
+    }
+
+    /* Game thread: whether it is sampling close to a contact */
+    public void contactNear(boolean near) {
+        contactNear = near;
+    }
+
+    public boolean isContactNear() {
+        return contactNear;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%-22s %8s %8s %9s %9s   (ms)%n", "", "jobs", "overruns", "worst", "budget");
+        synchronized (budgets) {
+            for (Budget budget : budgets) {
+                budget.print(out);
+            }
+        }
+    }
+
+    public void reset() {
+        synchronized (budgets) {
+            for (Budget budget : budgets) {
+                budget.reset();
+            }
+        }
+    }
+} // end class
@@ -0,0 +1,44 @@
+interface Display {
+    /* Same values as lejos.hardware.lcd.GraphicsLCD */
+    int BLACK = 0;
+    int WHITE = 0xffffff;
+    int SOLID = 0;
+    int DOTTED = 1;
+    int HCENTER = 1;
+    int LEFT = 4;
+    int RIGHT = 8;
+
+    int FONT_SMALL = 0;
+    int FONT_DEFAULT = 1;
+    int FONT_LARGE = 2;
+
+    int getWidth();
+
+    int getHeight();
+
+    void clear();
+
+    void setColor(int color);
+
+    void setFont(int font);
+
+    void setStrokeStyle(int style);
+
+    void drawRect(int x, int y, int width, int height);
+
+    void fillRect(int x, int y, int width, int height);
+
+    void drawLine(int x0, int y0, int x1, int y1);
+
+    void drawString(String string, int x, int y, int anchor);
+
+    int stringWidth(String string, int font);
+
+    int fontHeight(int font);
+
+    /*
+     * Copies rows y .. y + height of a full-screen image to the LCD. The image
+     * uses the LCD's layout: one byte per column of 8 pixels, bands of 8 rows.
+     */
+    void blit(byte[] image, int y, int height);
+} // end interface
@@ -0,0 +1,5 @@
+interface DistanceSensor {
+    int sampleSize();
+
+    void fetchSample(float[] sample, int offset); // meters
+} // end interface
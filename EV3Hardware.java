@@ -0,0 +1,392 @@
+import lejos.hardware.Brick;
+import lejos.hardware.BrickFinder;
+import lejos.hardware.Keys;
+import lejos.hardware.Sound;
+import lejos.hardware.ev3.EV3;
+import lejos.hardware.lcd.Font;
+import lejos.hardware.lcd.GraphicsLCD;
+import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import lejos.hardware.port.Port;
+import lejos.hardware.sensor.EV3TouchSensor;
+import lejos.hardware.sensor.EV3UltrasonicSensor;
+import lejos.robotics.RegulatedMotor;
+import lejos.robotics.SampleProvider;
+import lejos.utility.TextMenu;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+class EV3Hardware implements Hardware {
+    private final EV3Motor motorX;
+    private final EV3Motor motorY;
+    private final EV3Distance player1Sensor;
+    private final EV3Distance player2Sensor;
+    private final EV3Touch touchSensor;
+    private final EV3Display display;
+    private final EV3Audio audio = new EV3Audio();
+    private final EV3Keypad keypad;
+    private final EV3Clock clock = new EV3Clock();
+    private final Random random = new Random();
+    private final String name;
+
+    public EV3Hardware() {
+        /* Define brick and get its ports */
+        Brick brick = BrickFinder.getDefault();
+        name = "EV3 " + brick.getName();
+        Port s1 = brick.getPort("S1"); // EV3 Ultrasonic sensor player 2
+        Port s4 = brick.getPort("S4"); // EV3 Ultrasonic sensor plater 1
+        Port s3 = brick.getPort("S3"); // EV3 Touch sensor
+        Port a = brick.getPort("A"); // EV3 large motor X-axis
+        Port b = brick.getPort("B"); // EV3 large motor Y-axis
+
+        /* Get EV3 and gain access to display and keys */
+        EV3 ev3 = (EV3) BrickFinder.getLocal();
+        GraphicsLCD lcd = ev3.getGraphicsLCD();
+        Keys keys = ev3.getKeys();
+        display = new EV3Display(lcd);
+        keypad = new EV3Keypad(keys);
+
+        touchSensor = new EV3Touch(new EV3TouchSensor(s3));
+
+        /* Define UltraSonic sensors */
+        EV3UltrasonicSensor p1Sensor;
+        EV3UltrasonicSensor p2Sensor;
+        while (true) {
+            try {
+                p1Sensor = new EV3UltrasonicSensor(s4);
+                p2Sensor = new EV3UltrasonicSensor(s1);
+                break;
+            } catch (IllegalArgumentException e) {
+                lcd.clear();
+                lcd.drawString("Invalid sensor mode", 89, 56, GraphicsLCD.HCENTER);
+            }
+        }
+        player1Sensor = new EV3Distance(p1Sensor);
+        player2Sensor = new EV3Distance(p2Sensor);
+
+        motorX = new EV3Motor(new EV3LargeRegulatedMotor(a));
+        motorY = new EV3Motor(new EV3LargeRegulatedMotor(b));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Motor motorX() {
+        return motorX;
+    }
+
+    public Motor motorY() {
+        return motorY;
+    }
+
+    public DistanceSensor player1Sensor() {
+        return player1Sensor;
+    }
+
+    public DistanceSensor player2Sensor() {
+        return player2Sensor;
+    }
+
+    public TouchSensor touchSensor() {
+        return touchSensor;
+    }
+
+    public Display display() {
+        return display;
+    }
+
+    public Audio audio() {
+        return audio;
+    }
+
+    public Keypad keypad() {
+        return keypad;
+    }
+
+    public Clock clock() {
+        return clock;
+    }
+
+    public Random random() {
+        return random;
+    }
+} // end class
+
+
+class EV3Motor implements Motor {
+    private final EV3LargeRegulatedMotor motor;
+
+    public EV3Motor(EV3LargeRegulatedMotor motor) {
+        this.motor = motor;
+    }
+
+    public void setSpeed(float speed) {
+        motor.setSpeed(speed);
+    }
+
+    public void forward() {
+        motor.forward();
+    }
+
+    public void backward() {
+        motor.backward();
+    }
+
+    public void stop() {
+        motor.stop();
+    }
+
+    public void flt() {
+        motor.flt();
+    }
+
+    public void rotateTo(int limitAngle, boolean immediateReturn) {
+        motor.rotateTo(limitAngle, immediateReturn);
+    }
+
+    public int getTachoCount() {
+        return motor.getTachoCount();
+    }
+
+    public void resetTachoCount() {
+        motor.resetTachoCount();
+    }
+
+    public boolean isStalled() {
+        return motor.isStalled();
+    }
+
+    public boolean isMoving() {
+        return motor.isMoving();
+    }
+
+    public void setStallThreshold(int error, int time) {
+        motor.setStallThreshold(error, time);
+    }
+
+    public void setAcceleration(int acceleration) {
+        motor.setAcceleration(acceleration);
+    }
+
+    public void synchronizeWith(Motor other) {
+        if (other instanceof EV3Motor) {
+            motor.synchronizeWith(new RegulatedMotor[]{((EV3Motor) other).motor});
+        }
+    }
+
+    public void startSynchronization() {
+        motor.startSynchronization();
+    }
+
+    public void endSynchronization() {
+        motor.endSynchronization();
+    }
+} // end class
+
+
+class EV3Distance implements DistanceSensor {
+    private final SampleProvider distanceMode;
+
+    public EV3Distance(EV3UltrasonicSensor sensor) {
+        this.distanceMode = sensor.getDistanceMode();
+    }
+
+    public int sampleSize() {
+        return distanceMode.sampleSize();
+    }
+
+    public void fetchSample(float[] sample, int offset) {
+        distanceMode.fetchSample(sample, offset);
+    }
+} // end class
+
+
+class EV3Touch implements TouchSensor {
+    private final EV3TouchSensor sensor;
+
+    public EV3Touch(EV3TouchSensor sensor) {
+        this.sensor = sensor;
+    }
+
+    public int sampleSize() {
+        return sensor.sampleSize();
+    }
+
+    public void fetchSample(float[] sample, int offset) {
+        sensor.fetchSample(sample, offset);
+    }
+} // end class
+
+
+class EV3Display implements Display {
+    private final GraphicsLCD lcd;
+
+    public EV3Display(GraphicsLCD lcd) {
+        this.lcd = lcd;
+    }
+
+    private static Font font(int font) {
+        switch (font) {
+            case FONT_SMALL:
+                return Font.getSmallFont();
+            case FONT_LARGE:
+                return Font.getLargeFont();
+            default:
+                return Font.getDefaultFont();
+        }
+    }
+
+    public int getWidth() {
+        return lcd.getWidth();
+    }
+
+    public int getHeight() {
+        return lcd.getHeight();
+    }
+
+    public void clear() {
+        lcd.clear();
+    }
+
+    public void setColor(int color) {
+        lcd.setColor(color);
+    }
+
+    public void setFont(int font) {
+        lcd.setFont(font(font));
+    }
+
+    public void setStrokeStyle(int style) {
+        lcd.setStrokeStyle(style);
+    }
+
+    public void drawRect(int x, int y, int width, int height) {
+        lcd.drawRect(x, y, width, height);
+    }
+
+    public void fillRect(int x, int y, int width, int height) {
+        lcd.fillRect(x, y, width, height);
+    }
+
+    public void drawLine(int x0, int y0, int x1, int y1) {
+        lcd.drawLine(x0, y0, x1, y1);
+    }
+
+    public void drawString(String string, int x, int y, int anchor) {
+        lcd.drawString(string, x, y, anchor);
+    }
+
+    public int stringWidth(String string, int font) {
+        return font(font).stringWidth(string);
+    }
+
+    public int fontHeight(int font) {
+        return font(font).height;
+    }
+
+    public void blit(byte[] image, int y, int height) {
+        int width = lcd.getWidth();
+        lcd.bitBlt(image, width, lcd.getHeight(), 0, y, 0, y, width, height, GraphicsLCD.ROP_COPY);
+    }
+} // end class
+
+
+class EV3Audio implements Audio {
+    public void playTone(int freq, int duration, int vol) {
+        Sound.playTone(freq, duration, vol);
+    }
+
+    public void playTone(int freq, int duration) {
+        Sound.playTone(freq, duration);
+    }
+
+    public void playSample(File file, int vol) {
+        Sound.playSample(file, vol);
+    }
+
+    public void playSample(byte[] data, int offset, int length, int rate, int vol) {
+        Sound.playSample(data, offset, length, rate, vol);
+    }
+} // end class
+
+
+class EV3Keypad implements Keypad {
+    private final Keys keys;
+    private TextMenu menu; // the last one shown, reused for the same items
+    private String[] menuItems;
+    private String menuTitle;
+    private Thread showing; // runs the open menu, null while none is open
+    private volatile int chosen;
+
+    public EV3Keypad(Keys keys) {
+        this.keys = keys;
+    }
+
+    public boolean waitForAnyPress(int timeout) {
+        return keys.waitForAnyPress(timeout) != 0;
+    }
+
+    /*
+     * TextMenu.select only returns on a key or its timeout, and opens the
+     * menu afresh with the first item highlighted. So the menu runs on a
+     * thread of its own and stays open when a call times out; the next call
+     * waits on the same menu, with the cursor where the player left it.
+     */
+    public int select(String[] items, String title, int timeout) {
+        if (showing == null) {
+            if (menu == null || items != menuItems || !title.equals(menuTitle)) {
+                menu = new TextMenu(items, 1, title);
+                menuItems = items;
+                menuTitle = title;
+            }
+            final TextMenu open = menu;
+            showing = new Thread() {
+                public void run() {
+                    chosen = open.select(0, 0);
+                }
+            };
+            showing.setDaemon(true); // left open if the program ends meanwhile
+            showing.start();
+        }
+        try {
+            showing.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return TIMED_OUT;
+        }
+        if (showing.isAlive()) {
+            return TIMED_OUT;
+        }
+        showing = null;
+        return chosen;
+    }
+} // end class
+
+
+class EV3Clock implements Clock {
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /* Unlike Delay.msDelay, returns early and keeps the flag when interrupted */
+    public void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void adopt(Thread thread) {
+    }
+
+    public void park(Object blocker) {
+        LockSupport.park(blocker);
+    }
+
+    public void unpark(Thread thread) {
+        LockSupport.unpark(thread);
+    }
+} // end class
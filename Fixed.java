@@ -0,0 +1,53 @@
+/*
+ * Q16.16 fixed point in an int: 16 bits of whole tacho counts (or degrees,
+ * or tacho / sec) and 16 bits of fraction. The EV3's ARM core has no FPU,
+ * so every float or double operation in the game loop is a library call;
+ * these are plain integer instructions. The range is +-32767, which holds
+ * any position, pad or speed on the table.
+ */
+class Fixed {
+    static final int SHIFT = 16;
+    static final int ONE = 1 << SHIFT;
+    static final int HALF = ONE >> 1;
+    private static final long NANOS_TO_SECONDS = (1L << 48) / 1000000000L; // Q32 of 2^16 / 1e9
+
+    static int fromInt(int value) {
+        return value << SHIFT;
+    }
+
+    /* Not for the game loop: converting is itself floating point */
+    static int fromDouble(double value) {
+        return (int) Math.round(value * ONE);
+    }
+
+    static double toDouble(int value) {
+        return value / (double) ONE;
+    }
+
+    static float toFloat(int value) {
+        return value / (float) ONE;
+    }
+
+    /* Nearest whole number */
+    static int round(int value) {
+        return (value + HALF) >> SHIFT;
+    }
+
+    static int mul(int a, int b) {
+        return (int) (((long) a * b) >> SHIFT);
+    }
+
+    static int div(int a, int b) {
+        return (int) (((long) a << SHIFT) / b);
+    }
+
+    /* Seconds in Q16.16 for a span of nanoseconds up to a few minutes */
+    static int fromNanos(long nanos) {
+        return (int) ((nanos * NANOS_TO_SECONDS) >> 32);
+    }
+
+    /* Nanoseconds a Q16.16 distance takes at a Q16.16 speed per second */
+    static long nanosToCover(int distance, int speed) {
+        return (long) distance * 1000000000L / speed;
+    }
+} // end class
@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/*
+ * Offscreen 1-bit image in the LCD's own layout: each byte is a column of 8
+ * pixels (lowest bit on top) and the screen is cut into bands of 8 rows.
+ * flush() compares each band with what the LCD already shows and blits
+ * only the bands that changed.
+ */
+class FrameBuffer {
+    static final int BAND = 8; // rows per band
+
+    private final int width;
+    private final int height;
+    private final int bands;
+    private final byte[] pixels;
+    private final byte[] shown; // what the LCD has
+
+    public FrameBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.bands = (height + BAND - 1) / BAND;
+        this.pixels = new byte[bands * width];
+        this.shown = new byte[bands * width];
+    }
+
+    public void clear() {
+        Arrays.fill(pixels, (byte) 0);
+    }
+
+    /* Call after the LCD itself has been cleared */
+    public void forgetShown() {
+        Arrays.fill(shown, (byte) 0);
+    }
+
+    public void fillRect(int x, int y, int w, int h) {
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x + w, width);
+        int y1 = Math.min(y + h, height);
+        for (int row = y0; row < y1; row++) {
+            int base = (row / BAND) * width;
+            byte bit = (byte) (1 << (row % BAND));
+            for (int col = x0; col < x1; col++) {
+                pixels[base + col] |= bit;
+            }
+        }
+    }
+
+    public void dottedVLine(int x, int y0, int y1) {
+        for (int row = y0; row < y1; row += 2) {
+            fillRect(x, row, 1, 1);
+        }
+    }
+
+    /* Blits runs of changed bands, returns the number of bands sent */
+    public int flush(Display lcd) {
+        int sent = 0;
+        int b = 0;
+        while (b < bands) {
+            if (!bandChanged(b)) {
+                b++;
+                continue;
+            }
+            int first = b;
+            while (b < bands && bandChanged(b)) {
+                System.arraycopy(pixels, b * width, shown, b * width, width);
+                b++;
+            }
+            int y = first * BAND;
+            lcd.blit(pixels, y, Math.min(b * BAND, height) - y);
+            sent += b - first;
+        }
+        return sent;
+    }
+
+    private boolean bandChanged(int band) {
+        int end = (band + 1) * width;
+        for (int i = band * width; i < end; i++) {
+            if (pixels[i] != shown[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+} // end class
@@ -0,0 +1,24 @@
+import java.io.File;
+
+/*
+ * The game's tuning. The defaults are what plays well on the real table;
+ * the batch simulator overrides them to try other values without hours of
+ * play on the brick.
+ */
+class GameSettings {
+    int maxScore = 5; // score
+    float padWidth = 4.68f; // cm
+    float planeX = 32.76f; // cm
+    float planeY = 28.08f; // cm
+    int ballSpeed = 150; // degrees / sec
+    int increment = 15; // degrees / sec - increase speed for every pad hit
+    int padTol = 10; // tacho
+    int wallTol = 10; // tacho
+    boolean liveView = true; // ball and pads on the LCD during play; false keeps the score screen
+    boolean dumpMetrics = true; // at the end of every match
+    File metricsFile = null; // appended to; null for the console
+    File recordingFile = null; // every tick, for MatchReplay; null to record nothing
+    String[] soundSamples = new String[0]; // WAV files decoded into memory at start
+    long sampleCacheBytes = 512 * 1024; // decoded samples kept in memory
+    int telemetryPort = 0; // TelemetrySender listens here; 0 to send nothing
+} // end class
@@ -0,0 +1,208 @@
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/*
+ * Watches the garbage collector from its own thread. Every POLL_MS it reads
+ * the collection counts and times of the JVM's collectors; a change means
+ * pauses ended since the last poll. The game thread marks the collision
+ * windows, the stretches where it samples close to a contact, and a pause
+ * that may have overlapped one is reported: the contact in that window was
+ * judged late by as much as the pause.
+ *
+ * The JVM only tells how long collections took, not when, so a pause is
+ * placed somewhere in the poll period it was seen in, and counted against
+ * a window if the two could have overlapped. Times are System.nanoTime,
+ * since the collector stops real time even in a simulation.
+ *
+ * Where the JVM counts allocations per thread it also reports what the
+ * game thread allocated in the match, and in the collision windows.
+ */
+class GcMonitor extends Thread {
+    private static final long POLL_MS = 20;
+    private static final int WINDOWS = 64; // closed windows remembered, power of two
+    private static final int LISTED = 16; // overlapping pauses listed in the report
+
+    private final GarbageCollectorMXBean[] collectors;
+    private final com.sun.management.ThreadMXBean allocation; // null if not counted
+    private final long gameThreadId;
+    private Budget budget = new Budget("gc poll", Long.MAX_VALUE);
+
+    /* Collision windows, written by the game thread only */
+    private final long[] windowStart = new long[WINDOWS];
+    private final long[] windowEnd = new long[WINDOWS];
+    private volatile long windows; // closed so far
+    private volatile long openSince; // 0 while no window is open
+    private long openBytes;
+    private long windowBytes;
+    private long matchBytes;
+    private long matchWindows; // windows closed before the match
+
+    /* Pauses since startMatch, guarded by this */
+    private long matchStart;
+    private long pauses;
+    private long pauseMillis;
+    private long overlapping;
+    private long overlapMillis;
+    private final long[] listedAt = new long[LISTED]; // ns after matchStart
+    private final long[] listedMillis = new long[LISTED];
+
+    /* gameThread is the one that marks the windows */
+    public GcMonitor(Thread gameThread) {
+        GarbageCollectorMXBean[] found = new GarbageCollectorMXBean[0];
+        com.sun.management.ThreadMXBean counter = null;
+        try {
+            List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+            found = beans.toArray(found);
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                counter = (com.sun.management.ThreadMXBean) threads;
+                if (!counter.isThreadAllocatedMemorySupported() || !counter.isThreadAllocatedMemoryEnabled()) {
+                    counter = null;
+                }
+            }
+        } catch (LinkageError e) {
+            // a runtime without java.lang.management: nothing to watch
+        }
+        this.collectors = found;
+        this.allocation = counter;
+        this.gameThreadId = gameThread.getId();
+    }
+
+    public void instrument(Budget budget) {
+        this.budget = budget;
+    }
+
+    private long allocatedBytes() {
+        return (allocation != null) ? allocation.getThreadAllocatedBytes(gameThreadId) : 0;
+    }
+
+    /* Game thread: forgets the last match and starts counting again */
+    public synchronized void startMatch() {
+        matchStart = System.nanoTime();
+        pauses = 0;
+        pauseMillis = 0;
+        overlapping = 0;
+        overlapMillis = 0;
+        matchBytes = allocatedBytes();
+        windowBytes = 0;
+        matchWindows = windows;
+    }
+
+    /* Game thread: sampling close to a contact from now on; does nothing if a window is open */
+    public void openWindow() {
+        if (openSince == 0) {
+            openBytes = allocatedBytes();
+            openSince = System.nanoTime();
+        }
+    }
+
+    /* Game thread: the contact has been handled, or is no longer close */
+    public void closeWindow() {
+        long since = openSince;
+        if (since == 0) {
+            return;
+        }
+        long w = windows;
+        int at = (int) (w & (WINDOWS - 1));
+        windowStart[at] = since;
+        windowEnd[at] = System.nanoTime();
+        windowBytes += allocatedBytes() - openBytes;
+        openSince = 0;
+        windows = w + 1;
+    }
+
+    private long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private long collectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /* Whether a pause of millis that ended between from and to could have overlapped a window */
+    private boolean overlapsWindow(long from, long to, long millis) {
+        long earliest = from - millis * 1000000;
+        long since = openSince;
+        if (since != 0 && since < to) {
+            return true;
+        }
+        long w = windows;
+        for (long i = w - 1; i >= 0 && i >= w - WINDOWS; i--) {
+            int at = (int) (i & (WINDOWS - 1));
+            if (windowEnd[at] <= earliest) {
+                break; // older ones ended before too
+            }
+            if (windowStart[at] < to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void paused(long from, long to, long count, long millis) {
+        pauses += count;
+        pauseMillis += millis;
+        if (overlapsWindow(from, to, millis)) {
+            if (overlapping < LISTED) {
+                listedAt[(int) overlapping] = to - matchStart;
+                listedMillis[(int) overlapping] = millis;
+            }
+            overlapping++;
+            overlapMillis += millis;
+        }
+    }
+
+    public void run() {
+        if (collectors.length == 0) {
+            return;
+        }
+        long count = collections();
+        long millis = collectionMillis();
+        long lastPoll = System.nanoTime();
+        while (!isInterrupted()) {
+            try {
+                Thread.sleep(POLL_MS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            long now = System.nanoTime();
+            long c = collections();
+            long m = collectionMillis();
+            if (c != count) {
+                paused(lastPoll, now, c - count, m - millis);
+            }
+            count = c;
+            millis = m;
+            lastPoll = now;
+            budget.check(System.nanoTime() - now);
+        }
+    }
+
+    /* Game thread, so the allocation figures are its own */
+    public synchronized void print(PrintStream out) {
+        if (collectors.length == 0) {
+            out.println("GC: not watched on this runtime");
+            return;
+        }
+        out.printf("GC: %d collections, %d ms; %d may have overlapped a collision window, %d ms%n",
+                pauses, pauseMillis, overlapping, overlapMillis);
+        for (int i = 0; i < Math.min(overlapping, LISTED); i++) {
+            out.printf("  %8.1f s into the match: %d ms%n", listedAt[i] / 1e9, listedMillis[i]);
+        }
+        if (allocation != null) {
+            out.printf("Game thread allocated %d bytes in the match, %d in %d collision windows%n",
+                    allocatedBytes() - matchBytes, windowBytes, windows - matchWindows);
+        }
+    }
+} // end class
@@ -0,0 +1,30 @@
+import java.util.Random;
+
+/*
+ * Everything the game needs from the brick. Pong only talks to these
+ * interfaces, so the same game code runs on the EV3 (EV3Hardware) and
+ * headless on a PC (SimulatedHardware).
+ */
+interface Hardware {
+    String name(); // tells builds apart, e.g. for cached calibration
+
+    Motor motorX();
+
+    Motor motorY();
+
+    DistanceSensor player1Sensor();
+
+    DistanceSensor player2Sensor();
+
+    TouchSensor touchSensor();
+
+    Display display();
+
+    Audio audio();
+
+    Keypad keypad();
+
+    Clock clock();
+
+    Random random(); // kick-off angles; seeded in the simulation
+} // end interface
@@ -0,0 +1,12 @@
+interface Keypad {
+    int TIMED_OUT = -3; // from select, as leJOS's TextMenu
+
+    boolean waitForAnyPress(int timeout); // ms, true if a key was pressed
+
+    /*
+     * Index of the chosen item, -1 on escape, or TIMED_OUT after timeout ms.
+     * A menu that timed out stays open, and the next call with the same
+     * items goes on waiting on it.
+     */
+    int select(String[] items, String title, int timeout);
+} // end interface
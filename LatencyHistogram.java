@@ -0,0 +1,115 @@
+import java.io.PrintStream;
+
+/*
+ * Latency histogram in the style of HdrHistogram: 16 linear buckets per
+ * power of two, so any value from a nanosecond to centuries lands in a
+ * bucket no more than about 6% wide. Recording is a few array and field
+ * updates and never allocates.
+ *
+ * Each histogram has one writing thread. A dump taken while that thread
+ * records may be off by the sample in flight, which is fine for a report.
+ */
+class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS; // buckets per power of two
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    /* Takes records from any thread and keeps none of them */
+    static final LatencyHistogram DISCARD = new LatencyHistogram("discard", false);
+
+    final String name;
+    private final boolean keep;
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public LatencyHistogram(String name) {
+        this(name, true);
+    }
+
+    private LatencyHistogram(String name, boolean keep) {
+        this.name = name;
+        this.keep = keep;
+    }
+
+    /* Values below 2 * SUB get a bucket each, larger ones share by magnitude */
+    static int index(long value) {
+        if (value < 2 * SUB) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB + (int) (value >>> shift) - SUB;
+    }
+
+    /* Largest value that lands in the bucket */
+    static long highest(int index) {
+        if (index < 2 * SUB) {
+            return index;
+        }
+        int shift = index / SUB - 1;
+        long lowest = (long) (SUB + index % SUB) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    public void record(long value) {
+        if (!keep) {
+            return;
+        }
+        if (value < 0) {
+            value = 0;
+        }
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /* Highest value at or below which fraction q of the records lie */
+    public long percentile(double q) {
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /* One line, values in microseconds */
+    public void print(PrintStream out) {
+        if (count == 0) {
+            out.printf("%-22s %8d%n", name, 0);
+            return;
+        }
+        out.printf("%-22s %8d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, count,
+                min / 1e3, percentile(0.5) / 1e3, percentile(0.9) / 1e3, percentile(0.99) / 1e3,
+                max / 1e3, sum / 1e3 / count);
+    }
+} // end class
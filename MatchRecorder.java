@@ -0,0 +1,210 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Records every tick of a match to a file, for MatchReplay. Records are
+ * fixed size and go into a preallocated ring with one producer (the game
+ * thread) and one consumer (this thread), which writes them out in large
+ * sequential chunks. The game thread never touches the file: when the ring
+ * is full the record is dropped, and the match's END record says how many
+ * were.
+ *
+ * Each record is RECORD_SIZE bytes, big-endian: the type in byte 0, the
+ * clock time in bytes 4-11, then up to five 32-bit fields. A HEADER opens
+ * each match and has no time: bytes 4-11 hold FORMAT_VERSION instead, and
+ * MatchReplay reads no other version.
+ *
+ *   HEADER   maxX, maxY, padWidth (float tacho), padTol, wallTol
+ *   TICK     ballX, ballY (tacho), pad1, pad2 (Q16.16 tacho), referee decision
+ *   KICKOFF  scorer, angle (float degrees from the X-axis)
+ *   SCORE    score 1, score 2
+ *   END      winner, records dropped in the match
+ */
+class MatchRecorder extends Thread {
+    static final int HEADER = 1;
+    static final int TICK = 2;
+    static final int KICKOFF = 3;
+    static final int SCORE = 4;
+    static final int END = 5;
+    static final int RECORD_SIZE = 32; // bytes
+    static final long FORMAT_VERSION = 3; // bump whenever a field changes meaning; 1 had float pads, 2 no drop count
+    private static final int CAPACITY = 4096; // records, power of two; about 8 s of ticks
+    private static final int CHUNK = 512; // records per write
+
+    private final File file;
+    private final byte[] ring = new byte[CAPACITY * RECORD_SIZE];
+    private final ByteBuffer slots = ByteBuffer.wrap(ring);
+    private OutputStream out;
+    private volatile long head; // next record to write, this thread only
+    private volatile long tail; // next record to fill, producer only
+    private volatile boolean parked;
+    private volatile long flushTo; // records before this are written out and flushed at once
+    private long flushed; // flushTo when this thread last flushed
+    private volatile boolean closing;
+    private int dropped; // since the match's HEADER, producer only
+    private Budget budget = new Budget("recording", Long.MAX_VALUE);
+
+    /* file may be null to record nothing */
+    public MatchRecorder(File file) {
+        this.file = file;
+        if (file != null) {
+            try {
+                out = new FileOutputStream(file);
+            } catch (IOException e) {
+                System.out.println("Cannot record to " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public void instrument(Budget budget) {
+        this.budget = budget;
+    }
+
+    public boolean isRecording() {
+        return out != null;
+    }
+
+    /* Offset of the next free slot with type and time filled in, or -1 if there is none */
+    private int claim(int type, long nanos) {
+        if (out == null) {
+            return -1;
+        }
+        long t = tail;
+        if (t - head == CAPACITY) {
+            dropped++;
+            return -1;
+        }
+        int at = (int) (t & (CAPACITY - 1)) * RECORD_SIZE;
+        slots.putInt(at, type);
+        slots.putLong(at + 4, nanos);
+        return at;
+    }
+
+    private void publish() {
+        long t = tail + 1;
+        tail = t;
+        if (parked && t - head >= CHUNK) {
+            LockSupport.unpark(this);
+        }
+    }
+
+    public void header(float maxX, float maxY, double padWidth, int padTol, int wallTol) {
+        dropped = 0;
+        int at = claim(HEADER, FORMAT_VERSION);
+        if (at < 0) {
+            return;
+        }
+        slots.putFloat(at + 12, maxX);
+        slots.putFloat(at + 16, maxY);
+        slots.putFloat(at + 20, (float) padWidth);
+        slots.putInt(at + 24, padTol);
+        slots.putInt(at + 28, wallTol);
+        publish();
+    }
+
+    public void tick(TickSnapshot tick, int decision) {
+        int at = claim(TICK, tick.nanos);
+        if (at < 0) {
+            return;
+        }
+        slots.putInt(at + 12, tick.ballX);
+        slots.putInt(at + 16, tick.ballY);
+        slots.putInt(at + 20, tick.pad1);
+        slots.putInt(at + 24, tick.pad2);
+        slots.putInt(at + 28, decision);
+        publish();
+    }
+
+    public void kickOff(long nanos, int scorer, float angle) {
+        int at = claim(KICKOFF, nanos);
+        if (at < 0) {
+            return;
+        }
+        slots.putInt(at + 12, scorer);
+        slots.putFloat(at + 16, angle);
+        publish();
+    }
+
+    public void score(long nanos, int score1, int score2) {
+        int at = claim(SCORE, nanos);
+        if (at < 0) {
+            return;
+        }
+        slots.putInt(at + 12, score1);
+        slots.putInt(at + 16, score2);
+        publish();
+    }
+
+    /* Ends the match and has what is queued written out */
+    public void end(long nanos, int winner) {
+        int at = claim(END, nanos);
+        if (at < 0) {
+            return;
+        }
+        slots.putInt(at + 12, winner);
+        slots.putInt(at + 16, dropped);
+        publish();
+        flushTo = tail;
+        LockSupport.unpark(this); // whether or not it has parked yet, it sees flushTo
+    }
+
+    /* Writes out what is queued, closes the file and waits up to maxMs for that */
+    public void close(long maxMs) {
+        if (out == null) {
+            return;
+        }
+        closing = true;
+        LockSupport.unpark(this);
+        try {
+            join(maxMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void run() {
+        if (out == null) {
+            return;
+        }
+        try {
+            while (true) {
+                long f = flushTo; // before tail, which end() moves first
+                long h = head;
+                long pending = tail - h;
+                if (pending >= CHUNK || (pending > 0 && (h < f || closing))) {
+                    int from = (int) (h & (CAPACITY - 1));
+                    int count = (int) Math.min(pending, CAPACITY - from); // up to the end of the ring
+                    budget.defer(null);
+                    long before = System.nanoTime();
+                    out.write(ring, from * RECORD_SIZE, count * RECORD_SIZE);
+                    budget.check(System.nanoTime() - before);
+                    head = h + count;
+                } else if (closing) {
+                    break;
+                } else {
+                    if (flushed != f) { // everything before f is written by now
+                        out.flush();
+                        flushed = f;
+                    }
+                    parked = true;
+                    if (tail - head < CHUNK && flushTo == flushed && !closing) {
+                        LockSupport.park(this);
+                    }
+                    parked = false;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Recording to " + file + " stopped: " + e.getMessage());
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // nothing left to save
+            }
+        }
+    }
+} // end class
@@ -0,0 +1,235 @@
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+ * Feeds a MatchRecorder file back through the referee, with no brick and
+ * no clock, so a disputed point can be looked at tick by tick and a change
+ * to the game logic can be checked against real play. Every decision that
+ * differs from the recorded one is printed with the score and time, and
+ * the score is rebuilt from the misses and checked against the recording.
+ *
+ *   MatchReplay <recording> [--verbose] [--bench rounds]
+ *
+ * --verbose prints every decision other than nothing; --bench times the
+ * referee over all recorded ticks, rounds times.
+ */
+class MatchReplay {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: MatchReplay <recording> [--verbose] [--bench rounds]");
+            System.exit(2);
+        }
+        boolean verbose = false;
+        int benchRounds = 0;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--verbose")) {
+                verbose = true;
+            } else if (args[i].equals("--bench") && i + 1 < args.length) {
+                benchRounds = Integer.parseInt(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        MatchReplay replay = new MatchReplay(read(new File(args[0])), verbose);
+        String unreadable = replay.checkVersion();
+        if (unreadable != null) {
+            System.out.println(args[0] + ": " + unreadable);
+            System.exit(2);
+        }
+        int differences = replay.run();
+        if (benchRounds > 0) {
+            replay.bench(benchRounds);
+        }
+        System.exit(differences == 0 ? 0 : 1);
+    } // end main
+
+    private static ByteBuffer read(File file) throws IOException {
+        byte[] data = new byte[(int) (file.length() / MatchRecorder.RECORD_SIZE * MatchRecorder.RECORD_SIZE)];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    private final ByteBuffer records;
+    private final boolean verbose;
+    private final int count;
+    private int sink; // keeps the benchmarked decisions alive
+
+    public MatchReplay(ByteBuffer records, boolean verbose) {
+        this.records = records;
+        this.verbose = verbose;
+        this.count = records.capacity() / MatchRecorder.RECORD_SIZE;
+    }
+
+    private int type(int i) {
+        return records.getInt(i * MatchRecorder.RECORD_SIZE);
+    }
+
+    private long nanos(int i) {
+        return records.getLong(i * MatchRecorder.RECORD_SIZE + 4);
+    }
+
+    private int intField(int i, int field) {
+        return records.getInt(i * MatchRecorder.RECORD_SIZE + 12 + 4 * field);
+    }
+
+    private float floatField(int i, int field) {
+        return records.getFloat(i * MatchRecorder.RECORD_SIZE + 12 + 4 * field);
+    }
+
+    /* Why the recording cannot be replayed, or null if every match in it can */
+    public String checkVersion() {
+        for (int i = 0; i < count; i++) {
+            if (type(i) == MatchRecorder.HEADER && nanos(i) != MatchRecorder.FORMAT_VERSION) {
+                return "format version " + nanos(i) + " at record " + i + ", this replay reads version "
+                        + MatchRecorder.FORMAT_VERSION + " only";
+            }
+        }
+        return null;
+    }
+
+    private Referee referee(int header) {
+        return new Referee(floatField(header, 0), floatField(header, 1),
+                intField(header, 3), intField(header, 4), floatField(header, 2));
+    }
+
+    private void fill(TickSnapshot tick, int i) {
+        tick.nanos = nanos(i);
+        tick.ballX = intField(i, 0);
+        tick.ballY = intField(i, 1);
+        tick.pad1 = intField(i, 2);
+        tick.pad2 = intField(i, 3);
+    }
+
+    /* Replays every match, returns the number of differences found */
+    public int run() {
+        TickSnapshot tick = new TickSnapshot();
+        Referee referee = null;
+        int matches = 0;
+        int ticks = 0;
+        int differences = 0;
+        int score1 = 0;
+        int score2 = 0;
+        long start = 0;
+
+        for (int i = 0; i < count; i++) {
+            switch (type(i)) {
+                case MatchRecorder.HEADER:
+                    referee = referee(i);
+                    matches++;
+                    score1 = 0;
+                    score2 = 0;
+                    start = (i + 1 < count) ? nanos(i + 1) : 0;
+                    System.out.println("Match " + matches);
+                    break;
+                case MatchRecorder.KICKOFF:
+                    if (referee != null) {
+                        referee.reset();
+                    }
+                    if (verbose) {
+                        System.out.printf("%9.3f s  kick-off after player %d scored, %.1f degrees%n",
+                                (nanos(i) - start) / 1e9, intField(i, 0), floatField(i, 1));
+                    }
+                    break;
+                case MatchRecorder.TICK:
+                    if (referee == null) {
+                        break; // the recording started mid-match
+                    }
+                    ticks++;
+                    fill(tick, i);
+                    int recorded = intField(i, 4);
+                    int decided = referee.decide(tick);
+                    if (decided == Referee.MISS1) {
+                        score2++;
+                    } else if (decided == Referee.MISS2) {
+                        score1++;
+                    }
+                    if (decided != recorded) {
+                        differences++;
+                        System.out.printf("%9.3f s  at %d-%d: recorded %s, replayed %s; ball %d,%d pads %.1f %.1f%n",
+                                (tick.nanos - start) / 1e9, score1, score2, name(recorded), name(decided),
+                                tick.ballX, tick.ballY, Fixed.toDouble(tick.pad1), Fixed.toDouble(tick.pad2));
+                    } else if (verbose && decided != Referee.NOTHING) {
+                        System.out.printf("%9.3f s  %s; ball %d,%d pads %.1f %.1f%n",
+                                (tick.nanos - start) / 1e9, name(decided),
+                                tick.ballX, tick.ballY, Fixed.toDouble(tick.pad1), Fixed.toDouble(tick.pad2));
+                    }
+                    break;
+                case MatchRecorder.SCORE:
+                    if (intField(i, 0) != score1 || intField(i, 1) != score2) {
+                        differences++;
+                        System.out.printf("%9.3f s  recorded score %d-%d, replayed %d-%d%n",
+                                (nanos(i) - start) / 1e9, intField(i, 0), intField(i, 1), score1, score2);
+                        score1 = intField(i, 0); // carry on from the recorded score
+                        score2 = intField(i, 1);
+                    }
+                    break;
+                case MatchRecorder.END:
+                    System.out.printf("%9.3f s  player %d won %d-%d, %d records dropped while recording%n",
+                            (nanos(i) - start) / 1e9, intField(i, 0), score1, score2, intField(i, 1));
+                    break;
+                default:
+                    System.out.println("Unknown record type " + type(i) + " at record " + i + ", stopping");
+                    return differences + 1;
+            }
+        }
+        System.out.println(matches + " matches, " + ticks + " ticks replayed, " + differences + " differences");
+        return differences;
+    }
+
+    /* Times the referee over the recorded ticks, best of the rounds */
+    public void bench(int rounds) {
+        TickSnapshot tick = new TickSnapshot();
+        long best = Long.MAX_VALUE;
+        int ticks = 0;
+        for (int round = 0; round < rounds; round++) {
+            Referee referee = null;
+            ticks = 0;
+            long roundStart = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                int type = type(i);
+                if (type == MatchRecorder.HEADER) {
+                    referee = referee(i);
+                } else if (type == MatchRecorder.KICKOFF && referee != null) {
+                    referee.reset();
+                } else if (type == MatchRecorder.TICK && referee != null) {
+                    fill(tick, i);
+                    sink += referee.decide(tick);
+                    ticks++;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - roundStart);
+        }
+        if (ticks > 0) {
+            System.out.printf("Referee over %d ticks: %.1f ns / tick (best of %d rounds)%n",
+                    ticks, best / (double) ticks, rounds);
+        }
+    }
+
+    static String name(int decision) {
+        switch (decision) {
+            case Referee.NOTHING:
+                return "nothing";
+            case Referee.PAD1:
+                return "pad 1";
+            case Referee.PAD2:
+                return "pad 2";
+            case Referee.WALL:
+                return "wall";
+            case Referee.MISS1:
+                return "miss 1";
+            case Referee.MISS2:
+                return "miss 2";
+            default:
+                return "decision " + decision;
+        }
+    }
+} // end class
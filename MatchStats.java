@@ -0,0 +1,77 @@
+/*
+ * What happened during one call to Pong.play: who won each point and match,
+ * how many pad hits each rally lasted and how many ticks ballLoop took.
+ * Only the game thread writes it. The rallies are kept in an array sized
+ * up front, so a point allocates nothing; past its end they are counted
+ * but not kept.
+ */
+class MatchStats {
+    private static final int DEFAULT_RALLIES = 1024; // a long evening of matches at the brick
+
+    private final int[] rallies; // pad hits per point, in order
+    private int points;
+    private int hits; // in the current rally
+    private final int[] pointsWon = new int[3]; // by player 1 and 2
+    private final int[] matchesWon = new int[3];
+    private long ticks;
+
+    public MatchStats() {
+        this(DEFAULT_RALLIES);
+    }
+
+    /* Keeps the rallies of the first maxPoints points */
+    public MatchStats(int maxPoints) {
+        rallies = new int[maxPoints];
+    }
+
+    /* The most points matches can take, when each is played to maxScore */
+    static int maxPoints(int matches, int maxScore) {
+        return matches * (2 * maxScore - 1);
+    }
+
+    public void tick() {
+        ticks++;
+    }
+
+    public void padHit() {
+        hits++;
+    }
+
+    public void point(int scorer) {
+        if (points < rallies.length) {
+            rallies[points] = hits;
+        }
+        points++;
+        hits = 0;
+        pointsWon[scorer]++;
+    }
+
+    public void matchWon(int winner) {
+        matchesWon[winner]++;
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    /* Points whose rally was kept, the first of getPoints */
+    public int getRallies() {
+        return Math.min(points, rallies.length);
+    }
+
+    public int getRally(int point) {
+        return rallies[point];
+    }
+
+    public int getPointsWon(int player) {
+        return pointsWon[player];
+    }
+
+    public int getMatchesWon(int player) {
+        return matchesWon[player];
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+} // end class
@@ -0,0 +1,32 @@
+/* Median of the last few samples; drops single spikes and lost echoes entirely */
+class MedianFilter implements PadFilter {
+    private final float[] window;
+    private final float[] sorted;
+    private int next;
+    private int count;
+
+    public MedianFilter(int size) {
+        this.window = new float[size];
+        this.sorted = new float[size];
+    }
+
+    public float filter(float sample) {
+        window[next] = sample;
+        next = (next + 1) % window.length;
+        if (count < window.length) {
+            count++;
+        }
+
+        /* Insertion sort, the window is only a handful of samples */
+        for (int i = 0; i < count; i++) {
+            float v = window[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > v) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = v;
+        }
+        return sorted[count / 2];
+    }
+} // end class
@@ -0,0 +1,99 @@
+import java.io.PrintStream;
+
+/*
+ * What the game measures about itself, for when a point looks wrong.
+ *
+ * The game loop records only values it has already read from the clock,
+ * so on top of a few array updates it costs nothing per tick. The cost of
+ * one record is measured when the metrics are created; if the per-tick
+ * records would take more than MAX_OVERHEAD of the tightest tick on this
+ * machine, the per-tick histograms are switched off. Bounces, sensor reads
+ * and the workers are recorded regardless, being far rarer than ticks.
+ */
+class Metrics {
+    private static final double MAX_OVERHEAD = 0.01; // of a tick
+    private static final long TICK_NANOS = 2000000; // tightest tick, CollisionScheduler
+    private static final int RECORDS_PER_TICK = 3; // loop period and two pad extrapolations
+    private static final int CALIBRATION_RECORDS = 4096;
+
+    /* Per tick, on the game thread */
+    final LatencyHistogram loopPeriod;
+    final LatencyHistogram pad1Extrapolation;
+    final LatencyHistogram pad2Extrapolation;
+
+    /* Game thread, once per event */
+    final LatencyHistogram contactLate = new LatencyHistogram("contact after predict");
+    final LatencyHistogram contactEarly = new LatencyHistogram("contact before predict");
+    final LatencyHistogram setVel = new LatencyHistogram("Ball.setVel");
+    final LatencyHistogram hitPad = new LatencyHistogram("Ball.hitPad");
+
+    /* One per worker thread */
+    final LatencyHistogram sensor1Fetch = new LatencyHistogram("sensor 1 fetch");
+    final LatencyHistogram sensor2Fetch = new LatencyHistogram("sensor 2 fetch");
+    final LatencyHistogram soundLag = new LatencyHistogram("sound command lag");
+    final LatencyHistogram screenLag = new LatencyHistogram("screen job lag");
+    final LatencyHistogram frameRender = new LatencyHistogram("live view frame");
+
+    private final LatencyHistogram[] all;
+    private final long recordNanos; // cost of one record here
+    private final boolean perTick;
+
+    public Metrics() {
+        recordNanos = recordCost();
+        perTick = recordNanos * RECORDS_PER_TICK <= MAX_OVERHEAD * TICK_NANOS;
+        loopPeriod = perTick ? new LatencyHistogram("ballLoop period") : LatencyHistogram.DISCARD;
+        pad1Extrapolation = perTick ? new LatencyHistogram("pad 1 extrapolation") : LatencyHistogram.DISCARD;
+        pad2Extrapolation = perTick ? new LatencyHistogram("pad 2 extrapolation") : LatencyHistogram.DISCARD;
+        all = new LatencyHistogram[]{loopPeriod, pad1Extrapolation, pad2Extrapolation, contactLate,
+                contactEarly, setVel, hitPad, sensor1Fetch, sensor2Fetch, soundLag, screenLag, frameRender};
+    }
+
+    private static long recordCost() {
+        LatencyHistogram scratch = new LatencyHistogram("calibration");
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALIBRATION_RECORDS; i++) {
+                scratch.record(i * 977L);
+            }
+            best = Math.min(best, (System.nanoTime() - start) / CALIBRATION_RECORDS);
+        }
+        return best;
+    }
+
+    public boolean hasData() {
+        for (LatencyHistogram h : all) {
+            if (h.getCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void dump(PrintStream out, String title) {
+        out.println(title);
+        if (loopPeriod.getSum() > 0) {
+            out.printf("ballLoop: %.0f iterations / s over %.1f s%n",
+                    loopPeriod.getCount() * 1e9 / loopPeriod.getSum(), loopPeriod.getSum() / 1e9);
+        }
+        out.printf("%-22s %8s %9s %9s %9s %9s %9s %9s   (us)%n",
+                "", "count", "min", "p50", "p90", "p99", "max", "mean");
+        for (LatencyHistogram h : all) {
+            if (h != LatencyHistogram.DISCARD) {
+                h.print(out);
+            }
+        }
+        if (!perTick) {
+            out.println("Per-tick histograms off: one record costs " + recordNanos + " ns here");
+        }
+        out.flush();
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : all) {
+            if (h != LatencyHistogram.DISCARD) {
+                h.reset();
+            }
+        }
+    }
+} // end class
@@ -0,0 +1,97 @@
+/*
+ * Drives the ball's two axes as one. A new velocity goes to both regulated
+ * motors in a single synchronized batch, and commands that would not change
+ * anything are skipped, so a wall bounce only touches the Y-axis.
+ *
+ * The regulator ramps every speed change at the motor's acceleration. With
+ * equal accelerations the axis with the smaller change settles first and
+ * the ball curves off its line after every bounce, so each axis gets an
+ * acceleration scaled to its share of the change: both ramps then take the
+ * same time and the path stays straight while the speed builds up.
+ */
+class MotionController {
+    static final int ACCELERATION = 6000; // degrees / sec^2, leJOS default
+    private static final int MIN_ACCELERATION = 500; // degrees / sec^2
+
+    private final Motor motorX;
+    private final Motor motorY;
+    private final AxisState x = new AxisState();
+    private final AxisState y = new AxisState();
+
+    public MotionController(Motor motorX, Motor motorY) {
+        this.motorX = motorX;
+        this.motorY = motorY;
+        motorX.synchronizeWith(motorY);
+    }
+
+    /* Degrees / sec on each axis */
+    public void setVelocity(int newX, int newY) {
+        int changeX = Math.abs(newX - x.vel);
+        int changeY = Math.abs(newY - y.vel);
+        int change = Math.max(changeX, changeY);
+
+        motorX.startSynchronization();
+        if (changeX != 0 || !x.known) {
+            apply(motorX, x, newX, scaled(changeX, change));
+        }
+        if (changeY != 0 || !y.known) {
+            apply(motorY, y, newY, scaled(changeY, change));
+        }
+        motorX.endSynchronization();
+    }
+
+    private static int scaled(int change, int largest) {
+        if (largest == 0) {
+            return ACCELERATION;
+        }
+        return Math.max(MIN_ACCELERATION, ACCELERATION * change / largest);
+    }
+
+    /* Sends only the commands that differ from what the motor already has */
+    private static void apply(Motor motor, AxisState axis, int vel, int acceleration) {
+        if (acceleration != axis.acceleration) {
+            motor.setAcceleration(acceleration);
+            axis.acceleration = acceleration;
+        }
+        int speed = Math.abs(vel);
+        if (speed != Math.abs(axis.vel) || !axis.known) {
+            motor.setSpeed(speed);
+        }
+		/* Motor backward if speed is negative, forward otherwise */
+        boolean backward = vel < 0;
+        if (backward != (axis.vel < 0) || !axis.known) {
+            if (backward) {
+                motor.backward();
+            } else {
+                motor.forward();
+            }
+        }
+        axis.vel = vel;
+        axis.known = true;
+    }
+
+    /*
+     * Call after commanding the motors directly: the next setVelocity sends
+     * everything again and the default acceleration is restored.
+     */
+    public void forget() {
+        motorX.setAcceleration(ACCELERATION);
+        motorY.setAcceleration(ACCELERATION);
+        x.reset();
+        y.reset();
+    }
+} // end class
+
+
+/* What the controller last sent to one motor */
+class AxisState {
+    int vel; // degrees / sec, signed
+    int acceleration = MotionController.ACCELERATION;
+    boolean known;
+
+    void reset() {
+        vel = 0;
+        acceleration = MotionController.ACCELERATION;
+        known = false;
+    }
+} // end class
@@ -0,0 +1,100 @@
+/*
+ * Runs ball movements on a thread of its own, so the game can show the
+ * score, play sounds or wait for a key meanwhile. await() polls at a
+ * bounded rate through the clock rather than blocking outright, which also
+ * keeps simulated time moving while the game waits.
+ *
+ * One task serves every movement of a match, one at a time, and parks on
+ * the clock in between: a thread per point would be garbage in the match.
+ */
+class MotionTask extends Thread {
+    private static final int POLL_PERIOD = 5; // ms
+    private static final long CANCEL_WAIT = 100; // ms
+
+    private final Clock clock;
+    private volatile Runnable motion; // the movement to run next, null while idle
+    private volatile boolean done = true;
+    private volatile boolean cancelled;
+    private volatile boolean closed;
+    private boolean started; // game thread only
+
+    public MotionTask(Clock clock) {
+        this.clock = clock;
+    }
+
+    /* Runs motion next; the last movement must be done or cancelled */
+    public void begin(Runnable motion) {
+        cancelled = false;
+        done = false;
+        this.motion = motion;
+        if (!started) {
+            started = true;
+            start();
+            clock.adopt(this);
+        } else {
+            clock.unpark(this);
+        }
+    }
+
+    public void run() {
+        while (!closed) {
+            Runnable m = motion;
+            Thread.interrupted(); // a cancel that came after the last movement ended
+            if (m == null) {
+                if (!closed) {
+                    clock.park(this);
+                }
+                continue;
+            }
+            try {
+                if (!cancelled) {
+                    m.run();
+                }
+            } finally {
+                motion = null;
+                done = true;
+            }
+        }
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /*
+     * Waits for the movement to finish. If the waiting thread is interrupted
+     * the movement is cancelled instead and false is returned.
+     */
+    public boolean await() {
+        while (!done) {
+            if (Thread.currentThread().isInterrupted()) {
+                cancel();
+                return false;
+            }
+            clock.sleep(POLL_PERIOD);
+        }
+        return true;
+    }
+
+    /* Stops the movement issuing commands; the caller stops the motors */
+    public void cancel() {
+        cancelled = true;
+        interrupt();
+        boolean interrupted = Thread.interrupted(); // the sleeps would end straight away
+        long giveUp = clock.nanoTime() + CANCEL_WAIT * 1000000;
+        while (!done && clock.nanoTime() < giveUp) {
+            clock.sleep(POLL_PERIOD);
+            interrupted |= Thread.interrupted();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Ends the thread, cancelling any movement */
+    public void close() {
+        closed = true;
+        cancelled = true;
+        interrupt();
+    }
+} // end class
@@ -0,0 +1,35 @@
+interface Motor {
+    void setSpeed(float speed); // degrees / sec
+
+    void forward();
+
+    void backward();
+
+    void stop();
+
+    void flt();
+
+    void rotateTo(int limitAngle, boolean immediateReturn);
+
+    int getTachoCount();
+
+    void resetTachoCount();
+
+    boolean isStalled();
+
+    boolean isMoving();
+
+    void setStallThreshold(int error, int time);
+
+    void setAcceleration(int acceleration); // degrees / sec^2
+
+    /*
+     * Commands to this motor and other between start and endSynchronization
+     * are sent as one batch and take effect together.
+     */
+    void synchronizeWith(Motor other);
+
+    void startSynchronization();
+
+    void endSynchronization();
+} // end interface
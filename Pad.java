@@ -0,0 +1,139 @@
+class Pad extends Thread {
+    private static final int SAMPLE_PERIOD = 30; // ms, refresh rate of the ultrasonic sensor
+    private static final long SENSOR_AGE = SAMPLE_PERIOD * 1000000L / 2; // ns, average age of a reading
+    private static final long MAX_EXTRAPOLATION = 100000000; // ns
+    private final float width;
+    private final DistanceSensor playerRead;
+    private final float[] playerSample;
+    private final float tachoPrCm;
+    private final Clock clock;
+    private final PadFilter filter;
+    private final PadTracker tracker = new PadTracker(0.5f, 0.1f);
+    private LatencyHistogram fetchTime = LatencyHistogram.DISCARD;
+    private LatencyHistogram extrapolation = LatencyHistogram.DISCARD; // written by the game thread
+    private Budget budget = new Budget("pad", Long.MAX_VALUE);
+
+    /* Latest estimate, published with a sequence lock so readers never see half an update */
+    private volatile int seq;
+    private volatile int pos; // tacho, Q16.16
+    private volatile int vel; // tacho / sec, Q16.16
+    private volatile long sampleNanos;
+
+    public Pad(float width, DistanceSensor playerRead,
+               float tachoPrCm, Clock clock, PadFilter filter) {
+        this.tachoPrCm = tachoPrCm;
+        this.width = width * tachoPrCm;
+        this.playerRead = playerRead;
+        this.playerSample = new float[this.playerRead.sampleSize()];
+        this.clock = clock;
+        this.filter = filter;
+        sample();
+    }
+
+    public void instrument(LatencyHistogram fetch, LatencyHistogram extrapolation, Budget budget) {
+        this.fetchTime = fetch;
+        this.extrapolation = extrapolation;
+        this.budget = budget;
+    }
+
+    private void sample() {
+        long before = clock.nanoTime();
+        playerRead.fetchSample(playerSample, 0);
+        long fetched = clock.nanoTime();
+        fetchTime.record(fetched - before);
+        float measured = (filter.filter(playerSample[0]) - 0.035f) * tachoPrCm * 100;
+        long measuredAt = fetched - SENSOR_AGE;
+        tracker.update(measured, measuredAt);
+
+        seq++;
+        pos = Fixed.fromDouble(tracker.getPos());
+        vel = Fixed.fromDouble(tracker.getVel());
+        sampleNanos = measuredAt;
+        seq++;
+        budget.check(clock.nanoTime() - before);
+    }
+
+    public void run() {
+		/* Reads the pad position from sensor at the rate the sensor measures */
+        while (!isInterrupted()) {
+            sample();
+            clock.sleep(SAMPLE_PERIOD);
+        }
+    }
+
+    /*
+     * Position extrapolated to the given clock time from the tracked pad
+     * velocity, so a collision is judged against where the hand is at that
+     * moment rather than where the sensor last saw it. Tacho, Q16.16.
+     */
+    public int getPos(long atNanos) {
+        int p;
+        int v;
+        long t;
+        int s;
+        do {
+            s = seq;
+            p = pos;
+            v = vel;
+            t = sampleNanos;
+        } while ((s & 1) != 0 || s != seq);
+
+        extrapolation.record(atNanos - t);
+        long ahead = Math.min(Math.max(atNanos - t, 0), MAX_EXTRAPOLATION);
+        return p + Fixed.mul(v, Fixed.fromNanos(ahead));
+    }
+
+    public float getWidth() {
+        return width;
+    }
+} // end class
+
+
+/*
+ * Alpha-beta tracker over timestamped pad positions. Alpha sets how much of
+ * each position error is trusted, beta how quickly the velocity follows.
+ * A measurement that is not a number, as when lost echoes get through the
+ * filter, is skipped: the last estimate holds until a real one comes.
+ */
+class PadTracker {
+    private final float alpha;
+    private final float beta;
+    private float pos; // tacho
+    private float vel; // tacho / sec
+    private long lastNanos = -1;
+
+    public PadTracker(float alpha, float beta) {
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    public void update(float measured, long nanos) {
+        if (Float.isNaN(measured) || Float.isInfinite(measured)) {
+            return;
+        }
+        if (lastNanos < 0) {
+            pos = measured;
+            vel = 0;
+            lastNanos = nanos;
+            return;
+        }
+        float dt = (nanos - lastNanos) / 1e9f;
+        lastNanos = nanos;
+        if (dt <= 0) {
+            return;
+        }
+
+        float predicted = pos + vel * dt;
+        float residual = measured - predicted;
+        pos = predicted + alpha * residual;
+        vel = vel + (beta / dt) * residual;
+    }
+
+    public float getPos() {
+        return pos;
+    }
+
+    public float getVel() {
+        return vel;
+    }
+} // end class
@@ -0,0 +1,4 @@
+/* Moves a simulated hand; returns the new hand position in cm */
+interface PadController {
+    float update(long nanos, float ballY, float hand);
+} // end interface
@@ -0,0 +1,4 @@
+/* Smooths raw ultrasonic distances (meters) before they become pad positions */
+interface PadFilter {
+    float filter(float sample);
+} // end interface
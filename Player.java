@@ -0,0 +1,30 @@
+class Player {
+    private int score;
+    private final Pad pad;
+
+    public Player(Pad pad) {
+        this.score = 0;
+        this.pad = pad;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public double getWidth() {
+        return pad.getWidth();
+    }
+
+    /* Tacho, Q16.16 */
+    public int getPos(long atNanos) {
+        return pad.getPos(atNanos);
+    }
+
+    public void addPoint() {
+        score++;
+    }
+
+    public void resetScore(){
+        score = 0;
+    }
+} // end class
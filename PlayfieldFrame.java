@@ -0,0 +1,10 @@
+class PlayfieldFrame {
+    volatile int seq;
+    volatile long nanos; // clock time of the ball reading
+    volatile int ballX; // tacho
+    volatile int ballY; // tacho
+    volatile int xVel; // tacho / sec, Q16.16
+    volatile int yVel; // tacho / sec, Q16.16
+    volatile int pad1; // tacho, Q16.16
+    volatile int pad2; // tacho, Q16.16
+} // end class
@@ -0,0 +1,46 @@
+/*
+ * Ball and pad positions handed from the game loop to the Screen thread.
+ * The game loop writes the back frame and flips; each frame carries a
+ * sequence number so the screen can retry a read that raced with a write.
+ * Neither side ever waits for the other.
+ */
+class PlayfieldState {
+    private final PlayfieldFrame[] frames = {new PlayfieldFrame(), new PlayfieldFrame()};
+    private volatile int front;
+
+    /* Game thread only */
+    public void publish(long nanos, int ballX, int ballY, int xVel, int yVel, int pad1, int pad2) {
+        PlayfieldFrame back = frames[front ^ 1];
+        back.seq++;
+        back.nanos = nanos;
+        back.ballX = ballX;
+        back.ballY = ballY;
+        back.xVel = xVel;
+        back.yVel = yVel;
+        back.pad1 = pad1;
+        back.pad2 = pad2;
+        back.seq++;
+        front ^= 1;
+    }
+
+    /* Copies the latest complete frame */
+    public void read(PlayfieldFrame into) {
+        while (true) {
+            PlayfieldFrame frame = frames[front];
+            int s = frame.seq;
+            if ((s & 1) != 0) {
+                continue;
+            }
+            into.nanos = frame.nanos;
+            into.ballX = frame.ballX;
+            into.ballY = frame.ballY;
+            into.xVel = frame.xVel;
+            into.yVel = frame.yVel;
+            into.pad1 = frame.pad1;
+            into.pad2 = frame.pad2;
+            if (frame.seq == s) {
+                return;
+            }
+        }
+    }
+} // end class
@@ -1,428 +1,346 @@
-import lejos.hardware.Brick;
-import lejos.hardware.BrickFinder;
-import lejos.hardware.Keys;
-import lejos.hardware.Sound;
-import lejos.hardware.ev3.EV3;
-import lejos.hardware.lcd.Font;
-import lejos.hardware.lcd.GraphicsLCD;
-import lejos.hardware.motor.EV3LargeRegulatedMotor;
-import lejos.hardware.port.Port;
-import lejos.hardware.sensor.EV3TouchSensor;
-import lejos.hardware.sensor.EV3UltrasonicSensor;
-import lejos.robotics.SampleProvider;
-import lejos.utility.Delay;
-import lejos.utility.TextMenu;
-
 import java.io.File;
-import java.util.Random;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Date;
 
 import static java.lang.Math.*;
 
-class Ball {
-    private double vel;
-    private double angle;
-    private final float planeLengthX; // Tacho X-direction:	940 (32.76cm)	28.7 Tacho / cm
-    private final float planeLengthY; // Tacho Y-direction:	856 (28.08cm)	30.5 Tacho / cm
-    private final EV3LargeRegulatedMotor motorX;
-    private final EV3LargeRegulatedMotor motorY;
-    private float tachoPrCmX;
-    private float tachoPrCmY;
-
-    public Ball(float planeLengthX, float planeLengthY,
-                EV3LargeRegulatedMotor motorX, EV3LargeRegulatedMotor motorY) {
-        this.planeLengthX = planeLengthX;
-        this.planeLengthY = planeLengthY;
-        this.motorX = motorX;
-        this.motorY = motorY;
+/*
+ * Plays sounds on its own thread. Commands go through a bounded ring of
+ * preallocated SoundCommands with one producer (the game thread) and one
+ * consumer (this thread). When the ring is full the new command is dropped
+ * and counted, and the count goes out with each match's metrics, so no
+ * sound disappears silently. The thread
+ * parks while the ring is empty.
+ *
+ * The longer jingles are Tunes, played a slice at a time. Between slices
+ * the ring is checked, so a bounce or sample that comes in meanwhile
+ * plays within a slice and the jingle carries on after it; a new jingle
+ * replaces the one playing.
+ */
+class Speaker extends Thread{
+    private static final int VOL = 100; // Percent
+    private static final int CAPACITY = 8; // commands, power of two
+    private static final int FILE = 1;
+    private static final int TONE = 2;
+    private static final int COUNTDOWN = 3;
+    private static final int MISS = 4;
+    private static final int VICTORY = 5;
+    private static final int SLICE = 40; // ms, longest a new sound waits behind a jingle
+    private static final Tune COUNTDOWN_TUNE = new Tune(new int[]{
+            300, 150, 700,
+            300, 150, 700,
+            300, 150, 700,
+            1000, 500, 0});
+    private static final Tune MISS_TUNE = new Tune(new int[]{
+            0, 50, 150,
+            0, 50, 150,
+            0, 500, 0});
+    private static final Tune VICTORY_TUNE = new Tune(new int[]{
+            400, 150, 50,
+            400, 500, 0});
+
+    private final Audio audio;
+    private final Clock clock;
+    private final SoundCommand[] ring = new SoundCommand[CAPACITY];
+    private volatile long head; // next slot to play, this thread only
+    private volatile long tail; // next slot to fill, producer only
+    private volatile boolean parked;
+    private volatile int dropped;
+    private LatencyHistogram lag = LatencyHistogram.DISCARD; // post to play
+    private Budget budget = new Budget("speaker", Long.MAX_VALUE);
+    private long idleSince; // clock time the last command finished
+    private final SampleCache samples;
+    private Tune tune; // jingle playing, null if none
+    private int note; // index into the tune's notes
+    private int toneLeft; // ms of the current note still to play
+    private int gapLeft; // ms of silence after it
+    private File uncached; // the last file played from the card, kept for the next time
+
+    public Speaker(Audio audio, Clock clock, SampleCache samples) {
+        this.audio = audio;
+        this.clock = clock;
+        this.samples = samples;
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new SoundCommand();
+        }
     }
 
-    public int getXPos() {
-        return motorX.getTachoCount();
+    public void instrument(LatencyHistogram lag, Budget budget) {
+        this.lag = lag;
+        this.budget = budget;
     }
 
-    public int getYPos() {
-        return motorY.getTachoCount();
+    private void post(int choice, int freq, int duration, String file) {
+        long t = tail;
+        if (t - head == CAPACITY) {
+            dropped++;
+            return;
+        }
+        SoundCommand command = ring[(int) (t & (CAPACITY - 1))];
+        command.postedNanos = clock.nanoTime();
+        command.choice = choice;
+        command.freq = freq;
+        command.duration = duration;
+        command.file = file;
+        tail = t + 1;
+        if (parked) {
+            clock.unpark(this);
+        }
     }
 
-    private double getXVel() {
-        return vel * cos(angleInRad());
+    /* Commands dropped because the ring was full, since the last resetDropped */
+    public int getDropped() {
+        return dropped;
     }
 
-    private double getYVel() {
-        return vel * sin(angleInRad());
+    /* Producer thread only */
+    public void resetDropped() {
+        dropped = 0;
     }
 
-    public double getVel() {
-        return vel;
+    public void playSound(String newFile) {
+        post(FILE, 0, 0, newFile);
     }
 
-    private double angleInRad() {
-        return PI * angle / 180;
+    public void playSound(int newFreq, int newDuration) {
+        post(TONE, newFreq, newDuration, null);
     }
 
-    public float getTPCX() {
-        return tachoPrCmX;
+    public void countdownSound() {
+        post(COUNTDOWN, 0, 0, null);
     }
 
-    public float getTPCY() {
-        return tachoPrCmY;
+    public void missSound() {
+        post(MISS, 0, 0, null);
     }
 
-    private void setXPos(int newXPos) {
-        motorX.setSpeed(150);
-        motorX.rotateTo(newXPos, true);
+    public void victorySound() {
+        post(VICTORY, 0, 0, null);
     }
 
-    private void setYPos(int newYPos) {
-        motorY.setSpeed(150);
-        motorY.rotateTo(newYPos, true);
+    private void startTune(Tune next) {
+        tune = next;
+        note = 0;
+        toneLeft = 0;
+        gapLeft = 0;
     }
 
-    public void setVel(double vel) {
-        this.vel = vel;
-        long xVel = round(getXVel());
-        long yVel = round(getYVel());
-
-		/* Motor backward if speed is negative, forward otherwise */
-        motorX.setSpeed(xVel);
-        if (xVel < 0) {
-            motorX.backward();
-        } else {
-            motorX.forward();
+    /* Plays up to SLICE ms of the jingle */
+    private void playTuneSlice() {
+        while (toneLeft == 0 && gapLeft == 0) {
+            if (note == tune.notes.length) {
+                tune = null;
+                return;
+            }
+            toneLeft = tune.notes[note + 1];
+            gapLeft = tune.notes[note + 2];
+            note += 3;
         }
-
-        motorY.setSpeed(yVel);
-        if (yVel < 0) {
-            motorY.backward();
+        if (toneLeft > 0) {
+            int ms = Math.min(toneLeft, SLICE);
+            audio.playTone(tune.notes[note - 3], ms, VOL);
+            toneLeft -= ms;
         } else {
-            motorY.forward();
+            int ms = Math.min(gapLeft, SLICE);
+            clock.sleep(ms);
+            gapLeft -= ms;
         }
     }
 
-    private void setAngle(double angle) {
-        this.angle = angle;
-    }
-
-    public void hitWall() {
-        setAngle(360 - angle);
-        setVel(vel);
+    /* The next queued command, null if there is none */
+    private SoundCommand poll() {
+        long h = head;
+        return (tail == h) ? null : ring[(int) (h & (CAPACITY - 1))];
     }
 
-    public void hitPad(double posOnPad, double padLength) {
-        double newAngle = (-70 * (1 - posOnPad / padLength) + 70 * posOnPad / padLength);
-        boolean isRight = (cos(angleInRad()) > 0);
-
-        setAngle(isRight ? (180 - newAngle) : newAngle);
-    }
-
-
-    private void stopWhenStalled() {
-        boolean x = true;
-        boolean y = true;
-
-        while (x || y) {
-            if (motorX.isStalled()) {
-                motorX.stop();
-                x = false;
+    /* Blocks until a command is queued, null once interrupted */
+    private SoundCommand take() {
+        long h = head;
+        while (tail == h) {
+            if (isInterrupted()) {
+                return null;
             }
-            if (motorY.isStalled()) {
-                motorY.stop();
-                y = false;
+            parked = true;
+            if (tail == h) {
+                clock.park(this);
             }
+            parked = false;
         }
+        return ring[(int) (h & (CAPACITY - 1))];
     }
 
-    public void calibrate() {
-        motorX.setSpeed(50);
-        motorY.setSpeed(50);
-        motorX.setStallThreshold(5, 1);
-        motorY.setStallThreshold(5, 1);
-
-        motorX.backward();
-        motorY.backward();
-
-        stopWhenStalled();
-
-        motorX.flt();
-        motorY.flt();
-
-        Delay.msDelay(500);
-        motorX.resetTachoCount();
-        motorY.resetTachoCount();
-        motorX.stop();
-        motorY.stop();
-        Delay.msDelay(1000);
-
-        motorX.forward();
-        motorY.forward();
-
-        Delay.msDelay(3000);
-        motorX.setStallThreshold(2, 1);
-        motorY.setStallThreshold(2, 1);
-
-        stopWhenStalled();
-
-        motorX.flt();
-        motorY.flt();
-
-        Delay.msDelay(500);
-        motorX.stop();
-        motorY.stop();
-        tachoPrCmX = getXPos() / planeLengthX;
-        tachoPrCmY = getYPos() / planeLengthY;
-        motorX.setStallThreshold(50, 50);
-        motorY.setStallThreshold(50, 50);
-        Delay.msDelay(100);
-    } // end method
-
-    public void goToMiddle() {
-        int middleX = round(planeLengthX * tachoPrCmX / 2); // Length to center in tacho for X-axis
-        int middleY = round(planeLengthY * tachoPrCmY / 2); // Length to center in tacho for Y-axis
-
-        motorX.stop();
-        motorY.stop();
-
-        setXPos(middleX);
-        setYPos(middleY);
-
-		/* Wait for ball to reach the middle */
-        boolean x = true;
-        boolean y = true;
-        while (x || y) {
-            if (getXPos() >= middleX - 2 && getXPos() <= middleX + 2) {
-                x = false;
+    public void run() {
+        loop:
+        while (!isInterrupted()) {
+            SoundCommand command = (tune == null) ? take() : poll();
+            budget.defer(clock);
+            if (command == null) {
+                if (tune != null) {
+                    playTuneSlice();
+                    idleSince = clock.nanoTime();
+                }
+                continue;
             }
-            if (getYPos() >= middleY - 2 && getYPos() <= middleY + 2) {
-                y = false;
+            long now = clock.nanoTime();
+            lag.record(now - command.postedNanos);
+            budget.check(now - Math.max(command.postedNanos, idleSince)); // not counting the queue
+            switch (command.choice) {
+                case FILE:
+                    Sample sample = samples.get(command.file);
+                    if (sample != null) {
+                        audio.playSample(sample.data, 0, sample.data.length, sample.rate, VOL);
+                    } else {
+                        if (uncached == null || !uncached.getPath().equals(command.file)) {
+                            uncached = new File(command.file);
+                        }
+                        audio.playSample(uncached, VOL);
+                        clock.sleep(50);
+                    }
+                    break;
+                case TONE:
+                    audio.playTone(command.freq, command.duration, VOL);
+                    break;
+                case COUNTDOWN:
+                    startTune(COUNTDOWN_TUNE);
+                    break;
+                case MISS:
+                    startTune(MISS_TUNE);
+                    break;
+                case VICTORY:
+                    startTune(VICTORY_TUNE);
+                    break;
+                default:
+                    System.out.println("Error at line " + Thread.currentThread().getStackTrace()[0].getLineNumber());
+                    break loop;
+            } // switch
+            head++; // frees the slot only once the command is done with it
+            idleSince = clock.nanoTime();
+            if (tune != null && toneLeft == 0) {
+				/* The jingle was in a gap, and the gap went on while the command played */
+                gapLeft = (int) Math.max(0, gapLeft - (idleSince - now) / 1000000);
             }
-        }
-    } // end method
-
-    public void kickOff(int scorer) {
-        Random random = new Random();
-
-		/* Selects a side based on who scored */
-        int direction;
-        switch (scorer) {
-            case 0:
-                direction = random.nextInt(2) * 180;
-                break;
-            case 1:
-                direction = 180;
-                break;
-            case 2:
-                direction = 0;
-                break;
-            default:
-                throw new IllegalArgumentException("Illegal input value.");
-        }
-
-		/* Selects a random angle between 70 and -70 towards the side selected*/
-        double maxAngle = direction + 70;
-        double minAngle = direction - 70;
-        double startAngle;
-        do {
-            startAngle = random.nextGaussian() * 30 + direction;
-        } while (startAngle > maxAngle || startAngle < minAngle);
-
-        setAngle(startAngle);
-    }
-} // end class
-
-
-class Pad {
-    private float pos;
-    private final float width;
-    private final EV3UltrasonicSensor ultraSensor;
-    private final SampleProvider playerRead;
-    private final float[] playerSample;
-    private final float tachoPrCm;
-
-    public Pad(float width, EV3UltrasonicSensor ultraSensor,
-               float tachoPrCm) {
-        this.pos = 0;
-        this.tachoPrCm = tachoPrCm;
-        this.width = width * tachoPrCm;
-        this.ultraSensor = ultraSensor;
-        this.playerRead = this.ultraSensor.getDistanceMode();
-        this.playerSample = new float[this.playerRead.sampleSize()];
+        } // loop
     }
+}
 
-    public float getPos() {
-		/* Reads the pad position from sensor */
-        playerRead.fetchSample(playerSample, 0);
-        pos = (playerSample[0] - 0.035f) * tachoPrCm * 100;
-        return pos;
-    }
 
-    public float getWidth() {
-        return width;
-    }
+/* One slot in the Speaker ring, reused for every command */
+class SoundCommand {
+    int choice;
+    int freq; // Hertz
+    int duration; // Milliseconds
+    String file;
+    long postedNanos; // clock time
 } // end class
 
 
-class Player {
-    private int score;
-    private final Pad pad;
+/* A jingle as data: frequency (Hertz, 0 for silence), duration and gap after it (ms) for each note */
+class Tune {
+    final int[] notes;
 
-    public Player(Pad pad) {
-        this.score = 0;
-        this.pad = pad;
-    }
-
-    public int getScore() {
-        return score;
-    }
-
-    public double getWidth() {
-        return pad.getWidth();
-    }
-
-    public double getPos() {
-        return pad.getPos();
-    }
-
-    public void addPoint() {
-        score++;
-    }
-
-    public void resetScore(){
-        score = 0;
+    Tune(int[] notes) {
+        this.notes = notes;
     }
 } // end class
 
 
-class Speaker extends Thread{
-    private static int freq; // Hertz
-    private static final int VOL = 100; // Percent
-    private static String file;
-    private static int duration; // Milliseconds
-    private static int choice;
-
-  //  public Speaker() { }
-
-    public void playSound(String newFile) {
-        file = newFile;
-        choice = 1;
-    }
-
-    public static void playSound(int newFreq, int newDuration) {
-        freq = newFreq;
-        duration = newDuration;
-        choice = 2;
-    }
-
-    public static void countdownSound() {
-        choice = 3;
-    }
-
-    private static void runCountdownSound() {
-        Sound.playTone(300, 150);
-        Delay.msDelay(700);
-        Sound.playTone(300, 150);
-        Delay.msDelay(700);
-        Sound.playTone(300, 150);
-        Delay.msDelay(700);
-        Sound.playTone(1000, 500);
-    }
-
-    public static void missSound() {
-        choice = 4;
+class Screen extends Thread {
+    private static final String[] SCORES = new String[100]; // "0" to "99"
+    static {
+        for (int i = 0; i < SCORES.length; i++) {
+            SCORES[i] = Integer.toString(i);
+        }
     }
 
-    private static void runMissSound() {
-        Sound.playTone(0, 50);
-        Delay.msDelay(150);
-        Sound.playTone(0, 50);
-        Delay.msDelay(150);
-        Sound.playTone(0, 500);
+    private final Display lcd;
+    private final Clock clock;
+    private final Renderer renderer;
+    private volatile boolean runningAnimation = false;
+    private int choice = 0; // guarded by this
+    private long postedNanos; // guarded by this
+    private LatencyHistogram lag = LatencyHistogram.DISCARD; // post to start
+    private LatencyHistogram frameTime = LatencyHistogram.DISCARD;
+    private Budget budget = new Budget("screen", Long.MAX_VALUE); // live view frames
+    private String string;
+    private volatile int score1; // read by the live view between posts
+    private volatile int score2;
+    private boolean showingScore = false; // score scene is on the LCD
+    private int score1Text;
+    private int score2Text;
+    private final int HEIGHT = 128;
+    private final int WIDTH = 178;
+    private final long FRAME_PERIOD = 100; // ms, live view frame rate
+    private final FrameBuffer frame;
+    private final PlayfieldFrame view = new PlayfieldFrame();
+    private volatile boolean liveView = false;
+    private PlayfieldState playfield;
+    private float maxX; // tacho
+    private float maxY; // tacho
+    private float padWidth; // tacho
+    private int maxScore;
+
+    public Screen (Display lcd, Clock clock) {
+        this.lcd = lcd;
+        this.clock = clock;
+        this.renderer = new Renderer(lcd);
+        this.frame = new FrameBuffer(WIDTH, HEIGHT);
     }
 
-    public static void victorySound() {
-        choice = 5;
+    private void resetGraphics() {
+        lcd.setColor(Display.BLACK);
+        lcd.setFont(Display.FONT_DEFAULT);
     }
 
-    private static void runVictorySound() {
-        Sound.playTone(400, 150);
-        Delay.msDelay(50);
-        Sound.playTone(400, 500);
+    public void instrument(LatencyHistogram lag, LatencyHistogram frame, Budget budget) {
+        this.lag = lag;
+        this.frameTime = frame;
+        this.budget = budget;
     }
 
-    public void run() {
-        loop:
-        while (true) {
-            switch (choice) {
-                case 0:
-                    Delay.msDelay(10);
-                    break;
-                case 1:
-                    File playFile = new File(file);
-                    Sound.playSample(playFile, VOL);
-                    Delay.msDelay(50);
-                    choice = 0;
-                    break;
-                case 2:
-                    Sound.playTone(freq, duration, VOL);
-                    choice = 0;
-                    break;
-                case 3:
-                    runCountdownSound();
-                    choice = 0;
-                    break;
-                case 4:
-                    runMissSound();
-                    choice = 0;
-                    break;
-                case 5:
-                    runVictorySound();
-                    choice = 0;
-                    break;
-                default:
-                    System.out.println("Error at line " + Thread.currentThread().getStackTrace()[0].getLineNumber());
-                    choice = 0;
-                    break loop;
-            } // switch
-        } // loop
+    private synchronized void post(int newChoice) {
+        choice = newChoice;
+        postedNanos = clock.nanoTime();
+        notifyAll();
     }
-}
 
-
-class Screen extends Thread {
-    private final GraphicsLCD lcd;
-    private boolean runningAnimation = false;
-    private int choice = 0;
-    private String string;
-    private int score1;
-    private int score2;
-    private final int HEIGHT = 128;
-    private final int WIDTH = 178;
-
-    public Screen (GraphicsLCD lcd) {
-        this.lcd = lcd;
+    /* Sleeps until something is posted */
+    private synchronized boolean hasWork() {
+        return choice != 0;
     }
 
-    private void resetGraphics() {
-        lcd.setColor(GraphicsLCD.BLACK);
-        lcd.setFont(Font.getDefaultFont());
+    private synchronized int takeChoice() throws InterruptedException {
+        while (choice == 0) {
+            wait();
+        }
+        int c = choice;
+        choice = 0;
+        lag.record(clock.nanoTime() - postedNanos);
+        return c;
     }
 
     public void run() {
         loop:
         while (true) {
-            switch (choice) {
-                case 0:
-                    break;
+            int c;
+            try {
+                c = takeChoice();
+            } catch (InterruptedException e) {
+                break;
+            }
+            switch (c) {
                 case 1:
                     runStartupAnimation();
-                    choice = 0;
                     break;
                 case 2:
                     runPrintString();
-                    choice = 0;
                     break;
                 case 3:
                     runDisplayScore();
-                    choice = 0;
+                    break;
+                case 4:
+                    runLiveView();
                     break;
                 default:
                     System.out.println("Error at line " + Thread.currentThread().getStackTrace()[0].getLineNumber());
@@ -435,81 +353,73 @@ class Screen extends Thread {
         lcd.clear();
         resetGraphics();
 
-        lcd.setColor(GraphicsLCD.BLACK);
+        lcd.setColor(Display.BLACK);
         for (int n = 0; n < WIDTH / 2; n += 2) {
             lcd.drawRect(WIDTH / 2 - n, HEIGHT / 2 - n, 2 * n, 2 * n);
-            Delay.msDelay(50);
+            clock.sleep(50);
         }
 
         int p = 5;
         for (int i = 8; i <= 32; i *= 2) {
-            lcd.setColor(GraphicsLCD.WHITE);
+            lcd.setColor(Display.WHITE);
             int k = (i == 8) ? 5 : 6;
             lcd.fillRect((WIDTH - i * k) / 2 - p, HEIGHT / 2 - i / 2 - p, i * k + 2 * p, i + 2 * p);
             switch (i) {
                 case 8:
-                    lcd.setFont(Font.getSmallFont());
+                    lcd.setFont(Display.FONT_SMALL);
                     break;
                 case 16:
-                    lcd.setFont(Font.getDefaultFont());
+                    lcd.setFont(Display.FONT_DEFAULT);
                     break;
                 case 32:
-                    lcd.setFont(Font.getLargeFont());
+                    lcd.setFont(Display.FONT_LARGE);
                     break;
                 default:
                     System.out.println("Error at line " + Thread.currentThread().getStackTrace()[0].getLineNumber());
                     break;
             }
-            lcd.setColor(GraphicsLCD.BLACK);
-            lcd.drawString("TAM-PONG", WIDTH / 2, HEIGHT / 2 - i / 2, GraphicsLCD.HCENTER);
-            Delay.msDelay(1000);
+            lcd.setColor(Display.BLACK);
+            lcd.drawString("TAM-PONG", WIDTH / 2, HEIGHT / 2 - i / 2, Display.HCENTER);
+            clock.sleep(1000);
         }
 
-        lcd.clear();
-        resetGraphics();
-
-        lcd.drawString("TAM-PONG", 89, 0, GraphicsLCD.HCENTER);
+        showingScore = false;
+        renderer.clearScene();
+        renderer.addText("TAM-PONG", 89, 0, Display.FONT_DEFAULT, Display.HCENTER);
 
         int padH = 20;
         int padW = 5;
 
-        lcd.fillRect(0, HEIGHT / 2 - padH / 2, padW, padH);
-        lcd.fillRect(WIDTH - padW, HEIGHT / 2 - padH / 2, padW, padH);
+        renderer.addBox(0, HEIGHT / 2 - padH / 2, padW, padH);
+        renderer.addBox(WIDTH - padW, HEIGHT / 2 - padH / 2, padW, padH);
+        int ball = renderer.addBox(89, HEIGHT / 2, 2, 2);
+        renderer.flush();
 
+		/* Only the ball's old and new squares are repainted each step */
         while (runningAnimation) {
             for (int i = 89; i > 4 && runningAnimation; i--) {
-                lcd.setColor(GraphicsLCD.BLACK);
-                lcd.fillRect(i, HEIGHT/2, 2, 2);
-                Delay.msDelay(30);
-                lcd.setColor(GraphicsLCD.WHITE);
-                lcd.fillRect(i + 2, HEIGHT/2, 2, 2);
+                renderer.moveBox(ball, i, HEIGHT / 2);
+                renderer.flush();
+                clock.sleep(30);
             }
             for (int j = 6; j < 172 && runningAnimation; j++) {
-                lcd.setColor(GraphicsLCD.BLACK);
-                lcd.fillRect(j, HEIGHT / 2, 2, 2);
-                Delay.msDelay(30);
-                lcd.setColor(GraphicsLCD.WHITE);
-                if (j > 6) {
-                    lcd.fillRect(j - 2, HEIGHT / 2, 2, 2);
-                }
+                renderer.moveBox(ball, j, HEIGHT / 2);
+                renderer.flush();
+                clock.sleep(30);
             }
             for (int k = 172; k > 89 && runningAnimation; k--) {
-                lcd.setColor(GraphicsLCD.BLACK);
-                lcd.fillRect(k, HEIGHT / 2, 2, 2);
-                Delay.msDelay(30);
-                lcd.setColor(GraphicsLCD.WHITE);
-                if (k < 170) {
-                    lcd.fillRect(k + 2, HEIGHT / 2, 2, 2);
-                }
+                renderer.moveBox(ball, k, HEIGHT / 2);
+                renderer.flush();
+                clock.sleep(30);
             }
         }
 
-        lcd.clear();
+        renderer.clearScene();
     }
 
     public void startupAnimation() {
         runningAnimation = true;
-        choice = 1;
+        post(1);
     }
 
     public void stopAnimation() {
@@ -517,261 +427,569 @@ class Screen extends Thread {
     }
 
     private void runPrintString() {
-        lcd.clear();
+        showingScore = false;
         resetGraphics();
-        lcd.setFont(Font.getLargeFont());
+        int font = Display.FONT_LARGE;
         int s = 16;
-        if (Font.getLargeFont().stringWidth(string) > WIDTH) {
-            lcd.setFont(Font.getDefaultFont());
+        if (lcd.stringWidth(string, Display.FONT_LARGE) > WIDTH) {
+            font = Display.FONT_DEFAULT;
             s = 8;
-            if (Font.getDefaultFont().stringWidth(string) > WIDTH) {
-                lcd.setFont(Font.getSmallFont());
+            if (lcd.stringWidth(string, Display.FONT_DEFAULT) > WIDTH) {
+                font = Display.FONT_SMALL;
                 s = 4;
             }
         }
-        lcd.drawString(string, 89, 64 - s, GraphicsLCD.HCENTER);
+        renderer.clearScene();
+        renderer.addText(string, 89, 64 - s, font, Display.HCENTER);
+        renderer.flush();
         resetGraphics();
     }
 
     public void printString(String string) {
         this.string = string;
-        choice = 2;
+        post(2);
     }
 
+    /* Cached, so a point scored makes no garbage */
+    private static String scoreText(int score) {
+        return (score >= 0 && score < SCORES.length) ? SCORES[score] : Integer.toString(score);
+    }
+
+    /* Draws the score scene once, after that only the digits that changed */
     private void runDisplayScore() {
-        lcd.clear();
+        String s1 = scoreText(score1);
+        String s2 = scoreText(score2);
+        if (!showingScore) {
+            int pos = 20;
+            renderer.clearScene();
+            renderer.addText("TAM-PONG", 89, 0, Display.FONT_DEFAULT, Display.HCENTER);
+            score1Text = renderer.addText(s1, 89 + 2 * pos, 48, Display.FONT_LARGE, Display.LEFT);
+            score2Text = renderer.addText(s2, 89 - 2 * pos, 48, Display.FONT_LARGE, Display.RIGHT);
+            renderer.addLine(89, 20, 89, 128, Display.DOTTED);
+            showingScore = true;
+        } else {
+            renderer.setText(score1Text, s1);
+            renderer.setText(score2Text, s2);
+        }
+        renderer.flush();
         resetGraphics();
-        lcd.drawString("TAM-PONG", 89, 0, GraphicsLCD.HCENTER);
-        lcd.setFont(Font.getLargeFont());
-        int pos = 20;
-        lcd.drawString(Integer.toString(score1), 89 + 2 * pos, 48, GraphicsLCD.LEFT);
-        lcd.drawString(Integer.toString(score2), 89 - 2 * pos, 48, GraphicsLCD.RIGHT);
-
-        lcd.setStrokeStyle(GraphicsLCD.DOTTED);
-        lcd.drawLine(89, 20, 89, 128);
     }
 
+    /* While the live view runs it shows the score itself, so the scene is not switched */
     public void displayScore(int score1, int score2) {
         this.score1 = score1;
         this.score2 = score2;
-        choice = 3;
+        if (!liveView) {
+            post(3);
+        }
+    }
+
+    /*
+     * Draws the table and the score at a fixed frame rate until it is
+     * stopped or anything else is posted. It runs through the points of a
+     * match, so only the bands of the LCD that changed are sent. The ball
+     * is extrapolated from the last published tick to the frame time, since
+     * the game loop may sleep for a while between ticks.
+     */
+    private void runLiveView() {
+        showingScore = false;
+        renderer.clearScene();
+        frame.forgetShown();
+
+        long nextFrame = clock.nanoTime();
+        while (liveView && !hasWork() && !isInterrupted()) {
+            budget.defer(clock);
+            long frameStart = clock.nanoTime();
+            playfield.read(view);
+            long ahead = Math.min(Math.max(frameStart - view.nanos, 0), FRAME_PERIOD * 1000000);
+            float ballX = view.ballX + Fixed.toFloat(view.xVel) * ahead / 1e9f;
+            float ballY = view.ballY + Fixed.toFloat(view.yVel) * ahead / 1e9f;
+
+            frame.clear();
+            frame.dottedVLine(WIDTH / 2, 0, HEIGHT);
+
+			/* Player 1 on the right, as on the score screen */
+            int padH = Math.max(round(padWidth * (HEIGHT - 1) / maxY), 2);
+            frame.fillRect(WIDTH - 3, toScreenY(Fixed.toFloat(view.pad1)), 3, padH);
+            frame.fillRect(0, toScreenY(Fixed.toFloat(view.pad2)), 3, padH);
+            frame.fillRect(toScreenX(ballX) - 1, toScreenY(ballY) - 1, 3, 3);
+
+			/* One square per point along the top */
+            for (int n = 0; n < maxScore; n++) {
+                if (n < score1) {
+                    frame.fillRect(WIDTH / 2 + 6 + 5 * n, 0, 3, 3);
+                }
+                if (n < score2) {
+                    frame.fillRect(WIDTH / 2 - 9 - 5 * n, 0, 3, 3);
+                }
+            }
+            frame.flush(lcd);
+            long rendered = clock.nanoTime() - frameStart;
+            frameTime.record(rendered);
+            budget.check(rendered);
+
+            nextFrame += FRAME_PERIOD * 1000000;
+            long waitMs = (nextFrame - clock.nanoTime()) / 1000000;
+            if (waitMs > 0) {
+                clock.sleep(waitMs);
+            } else {
+                nextFrame = clock.nanoTime(); // fell behind, skip frames
+            }
+        }
+        lcd.clear();
+    }
+
+    private int toScreenX(float x) {
+        return WIDTH - 1 - round(x * (WIDTH - 1) / maxX);
+    }
+
+    private int toScreenY(float y) {
+        return round(y * (HEIGHT - 1) / maxY);
+    }
+
+    /* Shows the ball and pads live, if not shown already; the game loop publishes to playfield every tick */
+    public void liveView(PlayfieldState playfield, float maxX, float maxY, float padWidth, int maxScore) {
+        if (liveView) {
+            return;
+        }
+        this.playfield = playfield;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.padWidth = padWidth;
+        this.maxScore = maxScore;
+        liveView = true;
+        post(4);
+    }
+
+    public void stopLiveView() {
+        liveView = false;
     }
 }
 
 
 class CheckForExit extends Thread {
-    private final EV3TouchSensor touchSensor;
+    private static final int POLL_PERIOD = 50; // ms
+    private final TouchSensor touchSensor;
     // --Commented out by Inspection (22.11.2016 12.31):private final SampleProvider touchRead;
     private final float[] touchSample;
+    private final Clock clock;
+    private final Thread game;
+    private volatile boolean exitRequested = false;
+    private Budget budget = new Budget("exit button", Long.MAX_VALUE);
 
-    public CheckForExit(EV3TouchSensor touchSensor) {
+    public CheckForExit(TouchSensor touchSensor, Clock clock, Thread game) {
         this.touchSensor =  touchSensor;
         // --Commented out by inspection (22.11.2016 12:59):this.touchRead = this.touchSensor;
         this.touchSample = new float[this.touchSensor.sampleSize()];
+        this.clock = clock;
+        this.game = game;
+    }
+
+    public void instrument(Budget budget) {
+        this.budget = budget;
     }
 
     public void run() {
-		/* Exits program if touch sensor is pressed */
-        while (true) {
+		/* Asks the game thread to shut down if touch sensor is pressed */
+        while (!isInterrupted()) {
+            long before = clock.nanoTime();
             touchSensor.fetchSample(touchSample, 0);
+            budget.check(clock.nanoTime() - before);
             if (touchSample[0] > 0) {
-                System.exit(0);
+                exitRequested = true;
+                game.interrupt();
+                return;
             }
+            clock.sleep(POLL_PERIOD);
         }
     }
+
+    public boolean isExitRequested() {
+        return exitRequested;
+    }
 } // end class
 
 
 class Pong {
+    private static final String CALIBRATION_FILE = "pong-calibration.properties"; // next to the program
+    private static final String METRICS_FILE = "pong-metrics.txt"; // next to the program
+    private static final String RECORDING_FILE = "pong-match.rec"; // next to the program, last run only
+    private static final String[] REMATCH = {"Yes", "No"}; // one array, so the keypad can keep its menu
+    private static final int MENU_POLL = 500; // ms between looks at the exit button in a menu
+
     public static void main(String[] args) throws Exception {
-        final int MAX_SCORE = 5; // score
-        final float PAD_WIDTH = 4.68f; // cm
-        final float PLANE_X = 32.76f; // cm
-        final float PLANE_Y = 28.08f; // cm
-        final int BALL_SPEED = 150; // degrees / sec
-        final int INCREMENT = 15; // degrees / sec - increase speed for every pad hit
-        final int PAD_TOL = 10; // tacho
-        final int WALL_TOL = 10; //tacho
-
-		/* Define brick and get its ports */
-        Brick brick = BrickFinder.getDefault();
-        Port s1 = brick.getPort("S1"); // EV3 Ultrasonic sensor player 2
-        Port s4 = brick.getPort("S4"); // EV3 Ultrasonic sensor plater 1
-        Port s3 = brick.getPort("S3"); // EV3 Touch sensor
-        Port a = brick.getPort("A"); // EV3 large motor X-axis
-        Port b = brick.getPort("B"); // EV3 large motor Y-axis
-
-		/* Get EV3 and gain access to display and screen */
-        EV3 ev3 = (EV3) BrickFinder.getLocal();
-        GraphicsLCD lcd = ev3.getGraphicsLCD();
-        Keys keys = ev3.getKeys();
+        int telemetryPort = -1; // not given: the brick streams on the default port, a simulation not at all
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--telemetry")) {
+                telemetryPort = Integer.parseInt(args[i + 1]);
+                String[] rest = new String[args.length - 2];
+                System.arraycopy(args, 0, rest, 0, i);
+                System.arraycopy(args, i + 2, rest, i, args.length - i - 2);
+                args = rest;
+                break;
+            }
+        }
+        if (args.length > 0 && args[0].equals("--sim")) {
+            /* Headless run against the simulated brick: Pong --sim [seed] [rematches] [recording] [--telemetry port] */
+            long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+            int rematches = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+            GameSettings settings = new GameSettings();
+            settings.recordingFile = (args.length > 3) ? new File(args[3]) : null;
+            settings.telemetryPort = Math.max(0, telemetryPort);
+            SimulatedHardware hardware = new SimulatedHardware(seed, rematches);
+            long start = System.nanoTime();
+            play(hardware, null, settings, new MatchStats());
+            long realMs = (System.nanoTime() - start) / 1000000;
+            long virtualMs = hardware.clock().nanoTime() / 1000000;
+            System.out.println("Simulated " + virtualMs + " ms of play in " + realMs + " ms");
+        } else {
+            GameSettings settings = new GameSettings();
+            settings.metricsFile = new File(METRICS_FILE);
+            settings.recordingFile = new File(RECORDING_FILE);
+            settings.telemetryPort = (telemetryPort < 0) ? TelemetrySender.DEFAULT_PORT : telemetryPort;
+            /* By name, so the game also builds on a PC without the leJOS classes */
+            Hardware brick = (Hardware) Class.forName("EV3Hardware").getConstructor().newInstance();
+            play(brick, new File(CALIBRATION_FILE), settings, new MatchStats());
+        }
+        System.exit(0);
+    } // end main
+
+    /* calibrationFile may be null to calibrate in full every time */
+    static void play(Hardware hardware, File calibrationFile, GameSettings settings, MatchStats stats) {
+        final int MAX_SCORE = settings.maxScore; // score
+        final float PAD_WIDTH = settings.padWidth; // cm
+        final float PLANE_X = settings.planeX; // cm
+        final float PLANE_Y = settings.planeY; // cm
+        final int BALL_SPEED = settings.ballSpeed; // degrees / sec
+        final int INCREMENT = settings.increment; // degrees / sec - increase speed for every pad hit
+        final int PAD_TOL = settings.padTol; // tacho
+        final int WALL_TOL = settings.wallTol; //tacho
+
+        Clock clock = hardware.clock();
+        Keypad keys = hardware.keypad();
+
+		/* Define thread priorities and budgets */
+        CoreBudget budgets = new CoreBudget();
+        int gamePriority = Thread.currentThread().getPriority();
+        Budget tickBudget = budgets.assign(Thread.currentThread(), CoreBudget.GAME, "game tick");
 
 		/* Define touch sensor */
-        EV3TouchSensor touchSensor = new EV3TouchSensor(s3);
-        CheckForExit c = new CheckForExit(touchSensor);
+        CheckForExit c = new CheckForExit(hardware.touchSensor(), clock, Thread.currentThread());
+        c.instrument(budgets.assign(c, CoreBudget.SENSORS, "exit button read"));
         c.start();
+        clock.adopt(c);
 
 		/* Define graphical screen */
-        Screen screen = new Screen(lcd);
+        Screen screen = new Screen(hardware.display(), clock);
 
 		/* Define speaker */
-        Speaker speaker = new Speaker();
-
-		/* Define UltraSonic sensors */
-        EV3UltrasonicSensor p1Sensor;
-        EV3UltrasonicSensor p2Sensor;
-        while(true){
-            try{
-                p1Sensor = new EV3UltrasonicSensor(s4);
-                p2Sensor = new EV3UltrasonicSensor(s1);
-                break;
-            } catch(IllegalArgumentException e){
-                screen.printString("Invalid sensor mode");
-            }
-        }
-
-        /* Define motors */
-        EV3LargeRegulatedMotor motorA = new EV3LargeRegulatedMotor(a);
-        EV3LargeRegulatedMotor motorB = new EV3LargeRegulatedMotor(b);
+        SampleCache samples = new SampleCache(settings.sampleCacheBytes);
+        samples.preload(settings.soundSamples);
+        Speaker speaker = new Speaker(hardware.audio(), clock, samples);
 
 		/* Define ball */
-        Ball ball = new Ball(PLANE_X, PLANE_Y, motorA, motorB);
-
-        screen.start();
-        speaker.start();
-
-        screen.startupAnimation();
-
-        ball.calibrate();
-
-        screen.stopAnimation();
-
-		/* Define pads */
-        Pad pad1 = new Pad(PAD_WIDTH, p1Sensor, ball.getTPCY());
-        Pad pad2 = new Pad(PAD_WIDTH, p2Sensor, ball.getTPCY());
-
-		/* Define players */
-        Player p1 = new Player(pad1);
-        Player p2 = new Player(pad2);
+        Ball ball = new Ball(PLANE_X, PLANE_Y, hardware.motorX(), hardware.motorY(), clock, hardware.random());
+
+		/* Define measurements */
+        Metrics metrics = new Metrics();
+        screen.instrument(metrics.screenLag, metrics.frameRender,
+                budgets.assign(screen, CoreBudget.DISPLAY, "live view frame"));
+        speaker.instrument(metrics.soundLag, budgets.assign(speaker, CoreBudget.AUDIO, "sound start"));
+        ball.instrument(metrics.setVel, metrics.hitPad);
+
+		/* Define match recorder */
+        MatchRecorder recorder = new MatchRecorder(settings.recordingFile);
+        recorder.instrument(budgets.assign(recorder, CoreBudget.RECORDING, "recording write"));
+
+		/* Define telemetry to a PC */
+        TelemetrySender telemetry = new TelemetrySender(settings.telemetryPort, clock);
+        telemetry.instrument(budgets.assign(telemetry, CoreBudget.TELEMETRY, "telemetry write"));
+
+		/* Define garbage collector watch, prompt so pauses are placed closely */
+        GcMonitor gc = new GcMonitor(Thread.currentThread());
+        gc.instrument(budgets.assign(gc, CoreBudget.SENSORS, "gc poll"));
+
+        Pad pad1 = null;
+        Pad pad2 = null;
+        boolean playing = false; // a match is under way, its metrics not yet dumped
+
+        try {
+            screen.start();
+            clock.adopt(screen);
+            speaker.start();
+            clock.adopt(speaker);
+            recorder.start(); // on real time, as is the gc monitor
+            if (settings.dumpMetrics) {
+                gc.start(); // its report only goes out with the metrics
+            }
+            telemetry.start();
+            clock.adopt(telemetry);
 
-        final float MAX_X_POS = PLANE_X * ball.getTPCX();
-        final float MAX_Y_POS = PLANE_Y * ball.getTPCY();
+            screen.startupAnimation();
 
-        Delay.msDelay(500);
-        match:
-        do {
-            ball.goToMiddle();
+            CalibrationCache cache = new CalibrationCache(calibrationFile,
+                    hardware.name() + " " + PLANE_X + "x" + PLANE_Y);
+            float[] cached = cache.load();
+            boolean homed = (cached != null) && ball.home(cached[0], cached[1]);
+            if (!homed && !c.isExitRequested()) {
+                ball.calibrate();
+            }
 
-            screen.printString("Press to start");
-            keys.waitForAnyPress();
-            Delay.msDelay(500); // Separate key press sound from countdown
+            screen.stopAnimation();
+            if (c.isExitRequested()) {
+                return;
+            }
+            cache.save(ball.getTPCX(), ball.getTPCY());
+
+			/* Define pads */
+            pad1 = new Pad(PAD_WIDTH, hardware.player1Sensor(), ball.getTPCY(), clock, new MedianFilter(3));
+            pad2 = new Pad(PAD_WIDTH, hardware.player2Sensor(), ball.getTPCY(), clock, new MedianFilter(3));
+            pad1.instrument(metrics.sensor1Fetch, metrics.pad1Extrapolation,
+                    budgets.assign(pad1, CoreBudget.SENSORS, "pad 1 sample"));
+            pad2.instrument(metrics.sensor2Fetch, metrics.pad2Extrapolation,
+                    budgets.assign(pad2, CoreBudget.SENSORS, "pad 2 sample"));
+            pad1.start();
+            clock.adopt(pad1);
+            pad2.start();
+            clock.adopt(pad2);
+
+			/* Define players */
+            Player p1 = new Player(pad1);
+            Player p2 = new Player(pad2);
+
+            final float MAX_X_POS = PLANE_X * ball.getTPCX();
+            final float MAX_Y_POS = PLANE_Y * ball.getTPCY();
+
+            CollisionScheduler scheduler = new CollisionScheduler(clock,
+                    PAD_TOL, MAX_X_POS - PAD_TOL, WALL_TOL, MAX_Y_POS - WALL_TOL);
+            TickSnapshot tick = new TickSnapshot();
+            Referee referee = new Referee(MAX_X_POS, MAX_Y_POS, PAD_TOL, WALL_TOL, p1.getWidth());
+            final int PAD_LENGTH = Fixed.fromDouble(p1.getWidth()); // tacho, Q16.16
+            telemetry.field(MAX_X_POS, MAX_Y_POS);
+            PlayfieldState playfield = new PlayfieldState();
+
+            clock.sleep(500);
+            match:
+            do {
+                MotionTask centering = ball.goToMiddleAsync();
+
+                screen.printString("Press to start");
+                while (!keys.waitForAnyPress(100)) {
+                    if (c.isExitRequested()) {
+                        centering.cancel();
+                        break match;
+                    }
+                }
+                clock.sleep(500); // Separate key press sound from countdown
+                if (!centering.await()) {
+                    break match;
+                }
 
-            Speaker.countdownSound();
-            Delay.msDelay(2750);
+                speaker.countdownSound();
+                clock.sleep(2750);
+                if (c.isExitRequested()) {
+                    break match;
+                }
 
-            ball.kickOff(0);
+                recorder.header(MAX_X_POS, MAX_Y_POS, p1.getWidth(), PAD_TOL, WALL_TOL);
+                ball.kickOff(0);
+                recorder.kickOff(clock.nanoTime(), 0, ball.getKickOffAngle());
 
-            screen.displayScore(p1.getScore(), p2.getScore());
+                screen.displayScore(p1.getScore(), p2.getScore());
+                telemetry.score(p1.getScore(), p2.getScore());
 
-            int rounds = 0;
+                int rounds = 0;
 
-            gameLoop:
-            while (true) {
-                int speedIncrease = (BALL_SPEED * rounds * 2) / MAX_SCORE;
-                ball.setVel(BALL_SPEED + speedIncrease);
+                playing = true;
+                gc.startMatch();
+                gameLoop:
+                while (true) {
+                    int speedIncrease = (BALL_SPEED * rounds * 2) / MAX_SCORE;
+                    ball.setVel(BALL_SPEED + speedIncrease);
 
-                int lastTouched = 0; // Prevents the ball hitting the same element multiple times in a row
-                int lastPad = 0; // Prevents the ball from getting stuck in corners
+                    referee.reset();
 
+                    tick.capture(ball, p1, p2, clock);
+                    playfield.publish(tick.nanos, tick.ballX, tick.ballY, ball.getXVel(), ball.getYVel(),
+                            tick.pad1, tick.pad2);
+                    if (settings.liveView) {
+                        screen.liveView(playfield, MAX_X_POS, MAX_Y_POS, (float) p1.getWidth(), MAX_SCORE);
+                    }
+                    long lastTick = tick.nanos;
 
-		    	/* Check ball position */
-                ballLoop:
-                while (true) {
+			    	/* Check ball position */
+                    ballLoop:
+                    while (true) {
+                        if (c.isExitRequested()) {
+                            break match;
+                        }
+                        tick.capture(ball, p1, p2, clock);
+                        playfield.publish(tick.nanos, tick.ballX, tick.ballY, ball.getXVel(), ball.getYVel(),
+                                tick.pad1, tick.pad2);
+                        metrics.loopPeriod.record(tick.nanos - lastTick);
+                        telemetry.tick(tick, tick.nanos - lastTick);
+                        stats.tick();
+                        lastTick = tick.nanos;
+
+                        int event = referee.decide(tick);
+                        recorder.tick(tick, event);
+                        if (event != Referee.NOTHING) {
+                            gc.closeWindow();
+                            budgets.contactNear(false);
+                        }
+                        long predicted = scheduler.getPredictedContact();
+                        if (event != Referee.NOTHING && predicted != Long.MAX_VALUE) {
+                            long contact = referee.getContactNanos();
+                            if (contact >= predicted) {
+                                metrics.contactLate.record(contact - predicted);
+                            } else {
+                                metrics.contactEarly.record(predicted - contact);
+                            }
+                        }
+                        switch (event) {
+                            case Referee.PAD1:
+                                stats.padHit();
+                                speaker.playSound(420, 50);
+                                ball.hitPad(referee.getContactY() - referee.getContactPad(), PAD_LENGTH);
+                                ball.setVel(ball.getVel() + INCREMENT);
+                                break;
+                            case Referee.MISS1:
+                                p2.addPoint();
+                                stats.point(2);
+                                recorder.score(tick.nanos, p1.getScore(), p2.getScore());
+                                screen.displayScore(p1.getScore(), p2.getScore());
+                                telemetry.score(p1.getScore(), p2.getScore());
+                                speaker.missSound();
+                                if (!ball.goToMiddleAsync().await()) {
+                                    break match;
+                                }
+                                speaker.playSound(250,100);
+                                ball.kickOff(2);
+                                recorder.kickOff(clock.nanoTime(), 2, ball.getKickOffAngle());
+                                break ballLoop;
+                            case Referee.PAD2:
+                                stats.padHit();
+                                ball.hitPad(referee.getContactY() - referee.getContactPad(), PAD_LENGTH);
+                                ball.setVel(ball.getVel() + INCREMENT);
+                                speaker.playSound(420, 50);
+                                break;
+                            case Referee.MISS2:
+                                p1.addPoint();
+                                stats.point(1);
+                                recorder.score(tick.nanos, p1.getScore(), p2.getScore());
+                                screen.displayScore(p1.getScore(), p2.getScore());
+                                telemetry.score(p1.getScore(), p2.getScore());
+                                speaker.missSound();
+                                if (!ball.goToMiddleAsync().await()) {
+                                    break match;
+                                }
+                                ball.kickOff(1);
+                                recorder.kickOff(clock.nanoTime(), 1, ball.getKickOffAngle());
+                                speaker.playSound(250,100);
+                                break ballLoop;
+                            case Referee.WALL:
+                                ball.hitWall();
+                                speaker.playSound(210, 50);
+                                break;
+                        }
 
-                    boolean ballAtPlayer1Side = ((ball.getXPos() <= (PAD_TOL))
-                            && (lastTouched != 1)
-                            && (lastPad != 1));
-                    boolean ballAtPlayer2Side = ((ball.getXPos() >= (MAX_X_POS - PAD_TOL))
-                            && (lastTouched != 2)
-                            && (lastPad != 2));
-                    boolean ballAtUpperWall = ((ball.getYPos() <= (WALL_TOL))
-                            && (lastTouched != 3));
-                    boolean ballAtLowerWall = ((ball.getYPos() >= (MAX_Y_POS - WALL_TOL))
-                            && (lastTouched != 4));
-
-
-                    if (ballAtPlayer1Side) {
-                        boolean ballHitsPad = (ball.getYPos() > (p1.getPos() - PAD_TOL)
-                                && ball.getYPos() < (p1.getPos() + p1.getWidth() + PAD_TOL));
-                        if (ballHitsPad) {
-                            lastTouched = 1;
-                            lastPad = 1;
-                            Speaker.playSound(420, 50);
-                            ball.hitPad(ball.getYPos() - p1.getPos(), p1.getWidth());
-                            ball.setVel(ball.getVel() + INCREMENT);
+                        tickBudget.check(clock.nanoTime() - tick.nanos);
+                        scheduler.waitForNextTick(tick.ballX, tick.ballY, ball.getXVel(), ball.getYVel());
+                        if (scheduler.isNearContact()) {
+                            gc.openWindow();
                         } else {
-                            p2.addPoint();
-                            screen.displayScore(p1.getScore(), p2.getScore());
-                            Speaker.missSound();
-                            Delay.msDelay(200);
-                            ball.goToMiddle();
-                            Delay.msDelay(500);
-                            Speaker.playSound(250,100);
-                            ball.kickOff(2);
-                            break ballLoop;
+                            gc.closeWindow();
+                        }
+                        budgets.contactNear(scheduler.isNearContact());
+                    } // end ball
+                    rounds++;
+
+				    /* Check victory condition */
+                    if (p1.getScore() == MAX_SCORE || p2.getScore() == MAX_SCORE) {
+                        screen.stopLiveView();
+                        stats.matchWon((p1.getScore() == MAX_SCORE) ? 1 : 2);
+                        playing = false;
+                        recorder.end(clock.nanoTime(), (p1.getScore() == MAX_SCORE) ? 1 : 2);
+                        if (settings.dumpMetrics) {
+                            dumpMetrics(metrics, budgets, gc, speaker, settings.metricsFile, "Match won by player "
+                                    + ((p1.getScore() == MAX_SCORE) ? 1 : 2));
                         }
-                    } else if (ballAtPlayer2Side) {
-                        boolean ballHitsPad = (ball.getYPos() > (p2.getPos() - PAD_TOL)
-                                && ball.getYPos() < (p2.getPos() + p2.getWidth() + PAD_TOL));
-                        if (ballHitsPad) {
-                            lastTouched = 2;
-                            lastPad = 2;
-                            ball.hitPad(ball.getYPos() - p2.getPos(), p2.getWidth());
-                            ball.setVel(ball.getVel() + INCREMENT);
-                            Speaker.playSound(420, 50);
+                        metrics.reset();
+                        budgets.reset();
+                        speaker.resetDropped();
+                        String winner = (p1.getScore() == MAX_SCORE) ? "PLAYER 1 WON!" : "PLAYER 2 WON!";
+                        screen.printString(winner);
+                        speaker.victorySound();
+                        clock.sleep(4000);
+                        screen.printString("");
+
+				        /* The menu does not notice interrupts, so it gives the exit button a look now and then */
+                        int selection;
+                        do {
+                            if (c.isExitRequested()) {
+                                break match;
+                            }
+                            selection = keys.select(REMATCH, "Rematch?", MENU_POLL);
+                        } while (selection == Keypad.TIMED_OUT);
+                        if (selection == 0) {
+                            p1.resetScore();
+                            p2.resetScore();
+                            continue match;
                         } else {
-                            p1.addPoint();
-                            screen.displayScore(p1.getScore(), p2.getScore());
-                            Speaker.missSound();
-                            Delay.msDelay(200);
-                            ball.goToMiddle();
-                            Delay.msDelay(500);
-                            ball.kickOff(1);
-                            Speaker.playSound(250,100);
-                            break ballLoop;
+                            break match;
                         }
-                    } else if (ballAtUpperWall) {
-                        lastTouched = 3;
-                        ball.hitWall();
-                        Speaker.playSound(210, 50);
-                    } else if (ballAtLowerWall) {
-                        lastTouched = 4;
-                        ball.hitWall();
-                        Speaker.playSound(210, 50);
-                    }
-                } // end ball
-                rounds++;
-
-			    /* Check victory condition */
-                if (p1.getScore() == MAX_SCORE || p2.getScore() == MAX_SCORE) {
-                    String winner = (p1.getScore() == MAX_SCORE) ? "PLAYER 1 WON!" : "PLAYER 2 WON!";
-                    screen.printString(winner);
-                    Speaker.victorySound();
-                    Delay.msDelay(4000);
-                    screen.printString("");
-
-                    TextMenu textmenu = new TextMenu(new String[]{"Yes", "No"}, 1, "Rematch?");
-                    int selection = textmenu.select();
-                    if (selection == 0) {
-                        p1.resetScore();
-                        p2.resetScore();
-                        continue match;
-                    } else {
-                        break match;
                     }
+                } // end gameLoop
+            } while (true);
+        } finally {
+			/* Leave the table safe: motors stopped, worker threads ended, output flushed */
+            budgets.contactNear(false);
+            hardware.motorX().stop();
+            hardware.motorY().stop();
+            c.interrupt();
+            ball.close();
+            screen.stopAnimation();
+            screen.stopLiveView();
+            screen.interrupt();
+            speaker.interrupt();
+            gc.interrupt();
+            telemetry.interrupt();
+            if (pad1 != null) {
+                pad1.interrupt();
+                pad2.interrupt();
+            }
+            if (settings.dumpMetrics && playing && metrics.hasData()) {
+                dumpMetrics(metrics, budgets, gc, speaker, settings.metricsFile, "Match abandoned");
+            }
+            System.out.flush();
+            Thread.interrupted(); // clear the exit watcher's wake-up
+            recorder.close(2000);
+            Thread.currentThread().setPriority(gamePriority);
+        }
+    } // end method
+
+    /* Appends to file, or prints to the console if file is null or cannot be written */
+    private static void dumpMetrics(Metrics metrics, CoreBudget budgets, GcMonitor gc, Speaker speaker,
+                                    File file, String title) {
+        if (file != null) {
+            try {
+                PrintStream out = new PrintStream(new FileOutputStream(file, true));
+                try {
+                    metrics.dump(out, new Date() + " " + title);
+                    out.println("Sound commands dropped, ring full: " + speaker.getDropped());
+                    budgets.print(out);
+                    gc.print(out);
+                } finally {
+                    out.close();
                 }
-            } // end gameLoop
-        } while (true);
-        System.exit(0);
-    } // end main
+                return;
+            } catch (IOException e) {
+                System.out.println("Cannot write " + file + ": " + e.getMessage());
+            }
+        }
+        metrics.dump(System.out, title);
+        System.out.println("Sound commands dropped, ring full: " + speaker.getDropped());
+        budgets.print(System.out);
+        gc.print(System.out);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+/*
+ * Decides what one tick means for the point: the ball hits a pad or a
+ * wall, gets past a pad, or nothing happens. It remembers what the ball
+ * touched last, so a contact that lasts several ticks only counts once.
+ *
+ * The ball is followed along the straight line from the previous tick, so
+ * a fast ball that ends up well past a pad's line is judged where and when
+ * it crossed that line, against where the pad was at that moment. When it
+ * crosses more than one line in a tick, the one it crossed first counts.
+ * Positions are Q16.16 tacho, see Fixed.
+ */
+class Referee {
+    static final int NOTHING = 0;
+    static final int PAD1 = 1; // player 1 returns the ball
+    static final int PAD2 = 2;
+    static final int WALL = 3;
+    static final int MISS1 = 4; // the ball got past player 1
+    static final int MISS2 = 5;
+
+    private final int padLine1; // ball X at or below this reaches player 1
+    private final int padLine2; // ball X at or above this reaches player 2
+    private final int upperWall; // ball Y at or below this hits the upper wall
+    private final int lowerWall;
+    private final int padTol;
+    private final int padWidth;
+
+    private int lastTouched = 0; // Prevents the ball hitting the same element multiple times in a row
+    private int lastPad = 0; // Prevents the ball from getting stuck in corners
+
+    /* The previous tick, the start of the swept segment */
+    private boolean hasPrevious = false;
+    private int prevX;
+    private int prevY;
+    private int prevPad1;
+    private int prevPad2;
+    private long prevNanos;
+
+    /* Where the last decision other than NOTHING happened */
+    private long contactNanos;
+    private int contactY;
+    private int contactPad; // the pad on that side
+
+    /* Tacho, in plain numbers; only the constructor converts */
+    public Referee(float maxX, float maxY, int padTol, int wallTol, double padWidth) {
+        this.padLine1 = Fixed.fromInt(padTol);
+        this.padLine2 = Fixed.fromDouble(maxX - padTol);
+        this.upperWall = Fixed.fromInt(wallTol);
+        this.lowerWall = Fixed.fromDouble(maxY - wallTol);
+        this.padTol = Fixed.fromInt(padTol);
+        this.padWidth = Fixed.fromDouble(padWidth);
+    }
+
+    /* Call before every kick-off */
+    public void reset() {
+        lastTouched = 0;
+        lastPad = 0;
+        hasPrevious = false;
+    }
+
+    /* Fraction of the segment from before to now where it passes below line, 0 if it started there */
+    private static int crossingBelow(int before, int now, int line) {
+        return (before <= line) ? 0 : Fixed.div(before - line, before - now);
+    }
+
+    private static int crossingAbove(int before, int now, int line) {
+        return (before >= line) ? 0 : Fixed.div(line - before, now - before);
+    }
+
+    public int decide(TickSnapshot tick) {
+        if (!hasPrevious) {
+            remember(tick);
+        }
+        int x = Fixed.fromInt(tick.ballX);
+        int y = Fixed.fromInt(tick.ballY);
+        boolean ballAtPlayer1Side = ((x <= padLine1)
+                && (lastTouched != 1)
+                && (lastPad != 1));
+        boolean ballAtPlayer2Side = ((x >= padLine2)
+                && (lastTouched != 2)
+                && (lastPad != 2));
+        boolean ballAtUpperWall = ((y <= upperWall)
+                && (lastTouched != 3));
+        boolean ballAtLowerWall = ((y >= lowerWall)
+                && (lastTouched != 4));
+
+		/* The earliest crossing wins; on a tie pads go before walls, as they always have */
+        int first = 0;
+        int at = 2 * Fixed.ONE; // past the end of the segment
+        if (ballAtPlayer1Side) {
+            first = 1;
+            at = crossingBelow(prevX, x, padLine1);
+        }
+        if (ballAtPlayer2Side) {
+            int f = crossingAbove(prevX, x, padLine2);
+            if (f < at) {
+                first = 2;
+                at = f;
+            }
+        }
+        if (ballAtUpperWall) {
+            int f = crossingBelow(prevY, y, upperWall);
+            if (f < at) {
+                first = 3;
+                at = f;
+            }
+        }
+        if (ballAtLowerWall) {
+            int f = crossingAbove(prevY, y, lowerWall);
+            if (f < at) {
+                first = 4;
+                at = f;
+            }
+        }
+
+        int decision = NOTHING;
+        if (first != 0) {
+            contactNanos = prevNanos + ((at * (tick.nanos - prevNanos)) >> Fixed.SHIFT);
+            contactY = prevY + Fixed.mul(at, y - prevY);
+            if (first == 1) {
+                contactPad = prevPad1 + Fixed.mul(at, tick.pad1 - prevPad1);
+                boolean ballHitsPad = (contactY > (contactPad - padTol)
+                        && contactY < (contactPad + padWidth + padTol));
+                if (ballHitsPad) {
+                    lastTouched = 1;
+                    lastPad = 1;
+                    decision = PAD1;
+                } else {
+                    decision = MISS1;
+                }
+            } else if (first == 2) {
+                contactPad = prevPad2 + Fixed.mul(at, tick.pad2 - prevPad2);
+                boolean ballHitsPad = (contactY > (contactPad - padTol)
+                        && contactY < (contactPad + padWidth + padTol));
+                if (ballHitsPad) {
+                    lastTouched = 2;
+                    lastPad = 2;
+                    decision = PAD2;
+                } else {
+                    decision = MISS2;
+                }
+            } else {
+                lastTouched = first;
+                decision = WALL;
+            }
+        }
+        remember(tick);
+        return decision;
+    }
+
+    private void remember(TickSnapshot tick) {
+        hasPrevious = true;
+        prevX = Fixed.fromInt(tick.ballX);
+        prevY = Fixed.fromInt(tick.ballY);
+        prevPad1 = tick.pad1;
+        prevPad2 = tick.pad2;
+        prevNanos = tick.nanos;
+    }
+
+    /* Clock time the ball crossed the line of the last decision */
+    public long getContactNanos() {
+        return contactNanos;
+    }
+
+    /* Ball Y where it crossed that line */
+    public int getContactY() {
+        return contactY;
+    }
+
+    /* Pad position on that side when the ball crossed, for a pad decision */
+    public int getContactPad() {
+        return contactPad;
+    }
+} // end class
@@ -0,0 +1,243 @@
+/*
+ * Retained-mode drawing for the LCD. The scene is a short list of texts,
+ * filled boxes and lines; changing one marks its old and new bounds dirty,
+ * and flush() repaints only the dirty rectangles instead of the whole screen.
+ */
+class Renderer {
+    private static final int MAX_ITEMS = 16;
+    private static final int MAX_DIRTY = 4; // rectangles kept apart before they are merged
+    private static final int TEXT = 1;
+    private static final int BOX = 2;
+    private static final int LINE = 3;
+
+    private final Display lcd;
+    private final RenderItem[] items = new RenderItem[MAX_ITEMS];
+    private int count;
+    private boolean fullRedraw;
+
+    /* Dirty rectangles as x0, y0, x1, y1 with exclusive ends */
+    private final int[] dirty = new int[MAX_DIRTY * 4];
+    private int dirtyCount;
+
+    public Renderer(Display lcd) {
+        this.lcd = lcd;
+        for (int i = 0; i < MAX_ITEMS; i++) {
+            items[i] = new RenderItem();
+        }
+    }
+
+    /* Empties the scene and the LCD; the next flush draws every item once */
+    public void clearScene() {
+        count = 0;
+        dirtyCount = 0;
+        fullRedraw = true;
+        lcd.clear();
+    }
+
+    private RenderItem add(int kind) {
+        if (count == MAX_ITEMS) {
+            throw new IllegalStateException("Too many items on screen.");
+        }
+        RenderItem item = items[count];
+        item.kind = kind;
+        item.id = count;
+        count++;
+        return item;
+    }
+
+    public int addText(String string, int x, int y, int font, int anchor) {
+        RenderItem item = add(TEXT);
+        item.string = string;
+        item.x = x;
+        item.y = y;
+        item.font = font;
+        item.anchor = anchor;
+        bounds(item);
+        markDirty(item);
+        return item.id;
+    }
+
+    public int addBox(int x, int y, int width, int height) {
+        RenderItem item = add(BOX);
+        item.x = x;
+        item.y = y;
+        item.width = width;
+        item.height = height;
+        bounds(item);
+        markDirty(item);
+        return item.id;
+    }
+
+    public int addLine(int x0, int y0, int x1, int y1, int stroke) {
+        RenderItem item = add(LINE);
+        item.x = x0;
+        item.y = y0;
+        item.width = x1 - x0;
+        item.height = y1 - y0;
+        item.stroke = stroke;
+        bounds(item);
+        markDirty(item);
+        return item.id;
+    }
+
+    public void setText(int id, String string) {
+        RenderItem item = items[id];
+        if (string.equals(item.string)) {
+            return;
+        }
+        markDirty(item);
+        item.string = string;
+        bounds(item);
+        markDirty(item);
+    }
+
+    public void moveBox(int id, int x, int y) {
+        RenderItem item = items[id];
+        if (item.x == x && item.y == y) {
+            return;
+        }
+        markDirty(item);
+        item.x = x;
+        item.y = y;
+        bounds(item);
+        markDirty(item);
+    }
+
+    private void bounds(RenderItem item) {
+        switch (item.kind) {
+            case TEXT:
+                int w = lcd.stringWidth(item.string, item.font);
+                int x0 = item.x;
+                if ((item.anchor & Display.HCENTER) != 0) {
+                    x0 -= w / 2;
+                } else if ((item.anchor & Display.RIGHT) != 0) {
+                    x0 -= w;
+                }
+                item.x0 = x0;
+                item.y0 = item.y;
+                item.x1 = x0 + w;
+                item.y1 = item.y + lcd.fontHeight(item.font);
+                break;
+            case BOX:
+                item.x0 = item.x;
+                item.y0 = item.y;
+                item.x1 = item.x + item.width;
+                item.y1 = item.y + item.height;
+                break;
+            default:
+                item.x0 = Math.min(item.x, item.x + item.width);
+                item.y0 = Math.min(item.y, item.y + item.height);
+                item.x1 = Math.max(item.x, item.x + item.width) + 1;
+                item.y1 = Math.max(item.y, item.y + item.height) + 1;
+                break;
+        }
+    }
+
+    private void markDirty(RenderItem item) {
+        if (fullRedraw) {
+            return;
+        }
+        int x0 = Math.max(item.x0, 0);
+        int y0 = Math.max(item.y0, 0);
+        int x1 = Math.min(item.x1, lcd.getWidth());
+        int y1 = Math.min(item.y1, lcd.getHeight());
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        /* Grow a rectangle it touches, otherwise start a new one */
+        for (int i = 0; i < dirtyCount * 4; i += 4) {
+            if (x0 <= dirty[i + 2] && x1 >= dirty[i] && y0 <= dirty[i + 3] && y1 >= dirty[i + 1]) {
+                union(i, x0, y0, x1, y1);
+                return;
+            }
+        }
+        if (dirtyCount == MAX_DIRTY) {
+            union(0, x0, y0, x1, y1);
+            for (int i = 4; i < dirtyCount * 4; i += 4) {
+                union(0, dirty[i], dirty[i + 1], dirty[i + 2], dirty[i + 3]);
+            }
+            dirtyCount = 1;
+            return;
+        }
+        int i = dirtyCount * 4;
+        dirty[i] = x0;
+        dirty[i + 1] = y0;
+        dirty[i + 2] = x1;
+        dirty[i + 3] = y1;
+        dirtyCount++;
+    }
+
+    private void union(int i, int x0, int y0, int x1, int y1) {
+        dirty[i] = Math.min(dirty[i], x0);
+        dirty[i + 1] = Math.min(dirty[i + 1], y0);
+        dirty[i + 2] = Math.max(dirty[i + 2], x1);
+        dirty[i + 3] = Math.max(dirty[i + 3], y1);
+    }
+
+    /* Repaints what changed since the last flush */
+    public void flush() {
+        if (fullRedraw) {
+            for (int n = 0; n < count; n++) {
+                draw(items[n]);
+            }
+            fullRedraw = false;
+            return;
+        }
+
+        for (int i = 0; i < dirtyCount * 4; i += 4) {
+            int x0 = dirty[i];
+            int y0 = dirty[i + 1];
+            int x1 = dirty[i + 2];
+            int y1 = dirty[i + 3];
+            lcd.setColor(Display.WHITE);
+            lcd.fillRect(x0, y0, x1 - x0, y1 - y0);
+            for (int n = 0; n < count; n++) {
+                RenderItem item = items[n];
+                if (item.x0 < x1 && item.x1 > x0 && item.y0 < y1 && item.y1 > y0) {
+                    draw(item);
+                }
+            }
+        }
+        dirtyCount = 0;
+    }
+
+    private void draw(RenderItem item) {
+        lcd.setColor(Display.BLACK);
+        switch (item.kind) {
+            case TEXT:
+                lcd.setFont(item.font);
+                lcd.drawString(item.string, item.x, item.y, item.anchor);
+                break;
+            case BOX:
+                lcd.fillRect(item.x, item.y, item.width, item.height);
+                break;
+            case LINE:
+                lcd.setStrokeStyle(item.stroke);
+                lcd.drawLine(item.x, item.y, item.x + item.width, item.y + item.height);
+                lcd.setStrokeStyle(Display.SOLID);
+                break;
+            default:
+                break;
+        }
+    }
+} // end class
+
+
+/* One retained element of the scene, reused between scenes */
+class RenderItem {
+    int kind;
+    int id;
+    int x;
+    int y;
+    int width;
+    int height;
+    int font;
+    int anchor;
+    int stroke;
+    String string;
+    int x0; // bounds, exclusive ends
+    int y0;
+    int x1;
+    int y1;
+} // end class
@@ -0,0 +1,14 @@
+/* A sound effect decoded to what the brick plays: 8-bit unsigned mono PCM */
+class Sample {
+    final byte[] data;
+    final int rate; // samples / sec
+
+    Sample(byte[] data, int rate) {
+        this.data = data;
+        this.rate = rate;
+    }
+
+    public long getMillis() {
+        return data.length * 1000L / rate;
+    }
+} // end class
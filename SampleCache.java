@@ -0,0 +1,138 @@
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * WAV files decoded once and kept in memory, so a sound effect plays
+ * without reading the SD card. Files are loaded up front with preload, or
+ * by the Speaker the first time they are played. The decoded samples take
+ * at most maxBytes together; the one played least recently goes first, and
+ * a file too big to fit is played from the card as before. A file that is
+ * too big or will not decode is remembered, so it is not read again on
+ * every play just to be turned down.
+ */
+class SampleCache {
+    private final long maxBytes;
+    private final Map<String, Sample> samples = new LinkedHashMap<String, Sample>(16, 0.75f, true); // LRU order
+    private final Set<String> rejected = new HashSet<String>(); // played from the card
+    private long bytes;
+
+    public SampleCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /* Loads what fits; a file that cannot be read or decoded is reported and skipped */
+    public void preload(String[] files) {
+        for (String file : files) {
+            if (get(file) == null) {
+                System.out.println("Not cached: " + file);
+            }
+        }
+    }
+
+    /* The decoded file, loaded now if need be, or null if it cannot be cached */
+    public synchronized Sample get(String file) {
+        Sample sample = samples.get(file);
+        if (sample != null || rejected.contains(file)) {
+            return sample;
+        }
+        File f = new File(file);
+        if (f.length() > 4 * maxBytes + 1024) { // too big even as 16-bit stereo, a quarter once decoded
+            rejected.add(file);
+            return null;
+        }
+        try {
+            sample = decode(read(f));
+        } catch (IOException e) {
+            rejected.add(file);
+            return null;
+        }
+        if (sample.data.length > maxBytes) {
+            rejected.add(file);
+            return null;
+        }
+        Iterator<Sample> eldest = samples.values().iterator();
+        while (bytes + sample.data.length > maxBytes) {
+            bytes -= eldest.next().data.length;
+            eldest.remove();
+        }
+        samples.put(file, sample);
+        bytes += sample.data.length;
+        return sample;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /* RIFF WAVE with 8 or 16-bit PCM, mono or stereo; anything malformed is an IOException */
+    static Sample decode(byte[] wav) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+        if (wav.length < 12 || in.getInt(0) != 0x46464952 || in.getInt(8) != 0x45564157) { // "RIFF", "WAVE"
+            throw new IOException("Not a WAV file");
+        }
+        int channels = 0;
+        int rate = 0;
+        int bits = 0;
+        int at = 12;
+        while (at + 8 <= wav.length) {
+            int id = in.getInt(at);
+            int size = in.getInt(at + 4);
+            int body = at + 8;
+            if (size < 0 || size > wav.length - body) {
+                size = wav.length - body; // truncated file, take what is there
+            }
+            if (id == 0x20746d66) { // "fmt "
+                if (size < 16) {
+                    throw new IOException("Short fmt chunk");
+                }
+                if (in.getShort(body) != 1) {
+                    throw new IOException("Not PCM");
+                }
+                channels = in.getShort(body + 2);
+                rate = in.getInt(body + 4);
+                bits = in.getShort(body + 14);
+            } else if (id == 0x61746164) { // "data"
+                if ((bits != 8 && bits != 16) || channels < 1 || channels > 2 || rate <= 0) {
+                    throw new IOException("Unsupported format: " + bits + " bits, " + channels + " channels");
+                }
+                return new Sample(toUnsigned8Mono(in, body, size, bits, channels), rate);
+            }
+            at = body + size + (size & 1); // chunks are padded to an even length
+        }
+        throw new IOException("No sound data");
+    }
+
+    private static byte[] toUnsigned8Mono(ByteBuffer in, int from, int size, int bits, int channels) {
+        int frameSize = bits / 8 * channels;
+        byte[] out = new byte[size / frameSize];
+        for (int i = 0; i < out.length; i++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                int at = from + i * frameSize + c * bits / 8;
+                sum += (bits == 8) ? (in.get(at) & 0xff) - 128 : in.getShort(at) >> 8;
+            }
+            out[i] = (byte) (sum / channels + 128);
+        }
+        return out;
+    }
+} // end class
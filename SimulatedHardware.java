@@ -0,0 +1,718 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Headless stand-in for the EV3 brick. Time is virtual: it only moves when
+ * the thread that created the hardware (the game thread) sleeps or reads a
+ * motor or sensor, so a match runs as fast as the CPU allows. Motors and
+ * sensors are functions of virtual time and the seed, and the game thread
+ * waits, without a time limit, for each background thread it wakes or
+ * starts, so a seed replays the same match however busy the machine is.
+ * That holds while the game's threads wait only on this clock; one that
+ * waits on anything else is taken to be done, and runs on real time.
+ */
+class SimulatedHardware implements Hardware {
+    /* Physical table, measured on the real build */
+    static final float PLANE_X = 32.76f; // cm
+    static final float PLANE_Y = 28.08f; // cm
+    static final float TACHO_PR_CM_X = 28.7f;
+    static final float TACHO_PR_CM_Y = 30.5f;
+    static final float PAD_WIDTH = 4.68f; // cm
+    static final float HAND_SPEED = 25; // cm / sec, average player
+    static final float AIM_ERROR = 1.5f; // cm, average player
+
+    private final SimClock clock;
+    private final SimMotor motorX;
+    private final SimMotor motorY;
+    private final SimDistance player1Sensor;
+    private final SimDistance player2Sensor;
+    private final SimTouch touchSensor = new SimTouch();
+    private final SimDisplay display = new SimDisplay();
+    private final SimAudio audio;
+    private final SimKeypad keypad;
+    private final Random gameRandom;
+
+    public SimulatedHardware(long seed, int rematches) {
+        this(seed, rematches, trackingPlayer(seed, 1), trackingPlayer(seed, 2));
+    }
+
+    /* Everything random, the game's kick-offs included, follows from seed */
+    public SimulatedHardware(long seed, int rematches, PadController player1, PadController player2) {
+        Random random = new Random(seed);
+        clock = new SimClock();
+        int travelX = round(PLANE_X * TACHO_PR_CM_X);
+        int travelY = round(PLANE_Y * TACHO_PR_CM_Y);
+        motorX = new SimMotor(clock, travelX, random.nextInt(travelX));
+        motorY = new SimMotor(clock, travelY, random.nextInt(travelY));
+        player1Sensor = new SimDistance(clock, motorY, player1, random.nextLong());
+        player2Sensor = new SimDistance(clock, motorY, player2, random.nextLong());
+        audio = new SimAudio(clock);
+        keypad = new SimKeypad(rematches);
+        gameRandom = new Random(random.nextLong());
+    }
+
+    /* An average player's hand, different for each player and seed */
+    static PadController trackingPlayer(long seed, int player) {
+        return new TrackingPadController(new Random(seed + player).nextLong(), HAND_SPEED, AIM_ERROR);
+    }
+
+    private static int round(float f) {
+        return Math.round(f);
+    }
+
+    public String name() {
+        return "Simulated brick";
+    }
+
+    public Motor motorX() {
+        return motorX;
+    }
+
+    public Motor motorY() {
+        return motorY;
+    }
+
+    public DistanceSensor player1Sensor() {
+        return player1Sensor;
+    }
+
+    public DistanceSensor player2Sensor() {
+        return player2Sensor;
+    }
+
+    public SimTouch touchSensor() {
+        return touchSensor;
+    }
+
+    public SimDisplay display() {
+        return display;
+    }
+
+    public SimAudio audio() {
+        return audio;
+    }
+
+    public Keypad keypad() {
+        return keypad;
+    }
+
+    public SimClock clock() {
+        return clock;
+    }
+
+    public Random random() {
+        return gameRandom;
+    }
+} // end class
+
+
+class SimClock implements Clock {
+    private static final long IDLE_WAIT_MS = 10; // real ms, in case the game thread stops moving time
+    private static final long STALL_NANOS = 10000000000L; // real ns before a thread that never yields is reported
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Thread owner;
+    private final Map<Thread, Long> sleeping = new HashMap<Thread, Long>(); // deadlines
+    private final Set<Thread> awake = new HashSet<Thread>(); // woken, not yet asleep again
+    private final Set<Thread> starting = new HashSet<Thread>(); // adopted, not yet asleep
+    private final Set<Thread> woken = new HashSet<Thread>(); // unparked, not yet parked or asleep again
+    private volatile long nextWake = Long.MAX_VALUE;
+
+    /*
+     * The thread that creates the clock owns it. Other threads cannot move
+     * virtual time; their sleeps last until the owner has moved it far
+     * enough, and the owner then waits for them to finish their work and
+     * sleep again, so they see the same amount of virtual time as on the brick.
+     */
+    public SimClock() {
+        this.owner = Thread.currentThread();
+    }
+
+    public long nanoTime() {
+        return nanos.get();
+    }
+
+    /* The owner hands off to the new thread straight away, others on its next step */
+    public void adopt(Thread thread) {
+        synchronized (this) {
+            starting.add(thread);
+            nextWake = Long.MIN_VALUE;
+        }
+        if (Thread.currentThread() == owner) {
+            advance(0);
+        }
+    }
+
+    /* Unlike a thread's state, which may still say waiting, woken is only left by the thread itself */
+    public void unpark(Thread thread) {
+        synchronized (this) {
+            woken.add(thread);
+            nextWake = Long.MIN_VALUE;
+        }
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() == owner) {
+            advance(0);
+        }
+    }
+
+    public void park(Object blocker) {
+        Thread me = Thread.currentThread();
+        synchronized (this) {
+            awake.remove(me);
+            starting.remove(me);
+            woken.remove(me);
+            notifyAll();
+        }
+        LockSupport.park(blocker);
+    }
+
+    public void sleep(long ms) {
+        if (Thread.currentThread() == owner) {
+            advance(ms * 1000000L);
+            return;
+        }
+        Thread me = Thread.currentThread();
+        synchronized (this) {
+            long deadline = nanos.get() + ms * 1000000L;
+            awake.remove(me);
+            starting.remove(me);
+            woken.remove(me);
+            sleeping.put(me, deadline);
+            notifyAll();
+            try {
+                while (nanos.get() < deadline) {
+                    nextWake = Math.min(nextWake, deadline);
+                    wait(IDLE_WAIT_MS);
+                }
+                awake.add(me);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                sleeping.remove(me);
+            }
+        }
+    }
+
+    /* Charges the game thread for time spent blocked on a hardware call */
+    void charge(long cost) {
+        if (Thread.currentThread() == owner) {
+            advance(cost);
+        }
+    }
+
+    /* Moves time on by cost, stopping at every other thread's deadline on the way to let it run */
+    private void advance(long cost) {
+        long target = nanos.get() + cost;
+        while (true) {
+            long current = nanos.get();
+            long wake = nextWake;
+            if (wake <= current) {
+                handOff(current);
+            } else if (wake < target) {
+                nanos.set(wake);
+                handOff(wake);
+            } else {
+                nanos.set(target);
+                if (target >= nextWake) {
+                    handOff(target);
+                }
+                return;
+            }
+        }
+    }
+
+    private void handOff(long now) {
+        synchronized (this) {
+            forgetFinished(awake);
+            forgetFinished(starting);
+            forgetFinished(woken);
+            List<Thread> due = new ArrayList<Thread>(starting);
+            due.addAll(woken);
+            long next = Long.MAX_VALUE; // the others' next deadline, not left to them to set in time
+            for (Map.Entry<Thread, Long> e : sleeping.entrySet()) {
+                if (e.getValue() <= now) {
+                    due.add(e.getKey());
+                } else {
+                    next = Math.min(next, e.getValue());
+                }
+            }
+            nextWake = next;
+            notifyAll();
+
+			/* No time limit: moving on without a slow thread would make the match depend on the machine */
+            long stall = System.nanoTime() + STALL_NANOS;
+            try {
+                while (stillRunning(due, now)) {
+                    wait(1);
+                    if (System.nanoTime() > stall) {
+                        System.out.println("SimClock: still waiting for " + due + " at " + now / 1000000 + " ms");
+                        stall = System.nanoTime() + STALL_NANOS;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * A woken thread is done once it sleeps again or waits on anything else.
+     * Waiting to enter a monitor does not count: that is usually this clock,
+     * on the way to its next sleep. One woken with unpark is done only when
+     * it parks or sleeps on this clock again.
+     */
+    private boolean stillRunning(List<Thread> due, long now) {
+        for (Thread t : due) {
+            Long deadline = sleeping.get(t);
+            if (deadline != null && deadline <= now) {
+                return true;
+            }
+            if ((awake.contains(t) || starting.contains(t)) && isRunning(t)) {
+                return true;
+            }
+            if (woken.contains(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRunning(Thread t) {
+        Thread.State state = t.getState();
+        return state == Thread.State.RUNNABLE || state == Thread.State.BLOCKED;
+    }
+
+    private static void forgetFinished(Set<Thread> threads) {
+        for (Iterator<Thread> it = threads.iterator(); it.hasNext(); ) {
+            if (it.next().getState() == Thread.State.TERMINATED) {
+                it.remove();
+            }
+        }
+    }
+} // end class
+
+
+/*
+ * Regulated motor between two end stops. Speed changes ramp at the set
+ * acceleration like the leJOS regulator. Each command costs the game
+ * thread a round trip, except inside a synchronization block, where the
+ * whole batch costs one and takes effect at the same instant.
+ */
+class SimMotor implements Motor {
+    private static final float MAX_SPEED = 900; // degrees / sec
+    private static final int DEFAULT_ACCELERATION = 6000; // degrees / sec^2, leJOS default
+    private static final long READ_NANOS = 150000; // one tacho read on the brick
+    private static final long COMMAND_NANOS = 500000; // one command to the regulator
+    private static final long STALL_NANOS = 20000000; // blocked this long counts as stalled
+
+    private final SimClock clock;
+    private final int travel; // degrees between the end stops
+    private double angle; // physical degrees from the lower end stop
+    private double vel; // degrees / sec, signed
+    private double targetVel; // degrees / sec, signed
+    private int tachoZero;
+    private float speed;
+    private int acceleration = DEFAULT_ACCELERATION;
+    private int direction; // -1 backward, 0 stopped, 1 forward
+    private boolean rotating;
+    private int target; // physical degrees, only while rotating
+    private long lastNanos;
+    private long blockedSince = -1;
+    private SimMotor[] group = {this};
+    private volatile boolean batching;
+
+    public SimMotor(SimClock clock, int travel, int startAngle) {
+        this.clock = clock;
+        this.travel = travel;
+        this.angle = startAngle;
+        this.lastNanos = clock.nanoTime();
+    }
+
+    /* Integrates the motion since the last call and applies the end stops */
+    private void advance() {
+        long now = clock.nanoTime();
+        double dt = (now - lastNanos) / 1e9;
+        lastNanos = now;
+
+        if (rotating) {
+            double step = speed * dt;
+            double remaining = target - angle;
+            if (Math.abs(remaining) <= step) {
+                angle = target;
+                rotating = false;
+                vel = 0;
+                targetVel = 0;
+            } else {
+                angle += Math.signum(remaining) * step;
+                vel = Math.signum(remaining) * speed;
+            }
+        } else {
+            double diff = targetVel - vel;
+            if (diff != 0) {
+                double a = acceleration * Math.signum(diff);
+                double ramp = diff / a;
+                if (dt < ramp) {
+                    angle += vel * dt + a * dt * dt / 2;
+                    vel += a * dt;
+                } else {
+                    angle += vel * ramp + a * ramp * ramp / 2 + targetVel * (dt - ramp);
+                    vel = targetVel;
+                }
+            } else {
+                angle += vel * dt;
+            }
+        }
+
+        if (angle < 0 || angle > travel) {
+            angle = (angle < 0) ? 0 : travel;
+            vel = 0;
+            if (blockedSince < 0) {
+                blockedSince = now;
+            }
+        } else if (angle > 0 && angle < travel) {
+            blockedSince = -1; // Still against a stop when no time has passed
+        }
+    }
+
+    /* Charges one regulator round trip, unless the command is part of a batch */
+    private void command() {
+        if (!batching) {
+            clock.charge(COMMAND_NANOS);
+        }
+    }
+
+    private void move(int newDirection) {
+        command();
+        synchronized (this) {
+            advance();
+            direction = newDirection;
+            targetVel = direction * speed;
+            rotating = false;
+            blockedSince = -1;
+        }
+    }
+
+    public void setSpeed(float speed) {
+        command();
+        synchronized (this) {
+            advance();
+            this.speed = Math.min(Math.abs(speed), MAX_SPEED);
+            if (!rotating) {
+                targetVel = direction * this.speed;
+            }
+        }
+    }
+
+    public void setAcceleration(int acceleration) {
+        command();
+        synchronized (this) {
+            advance();
+            this.acceleration = Math.max(Math.abs(acceleration), 1);
+        }
+    }
+
+    public void forward() {
+        move(1);
+    }
+
+    public void backward() {
+        move(-1);
+    }
+
+    public void stop() {
+        move(0);
+    }
+
+    public void flt() {
+        move(0);
+    }
+
+    public void rotateTo(int limitAngle, boolean immediateReturn) {
+        command();
+        synchronized (this) {
+            advance();
+            target = limitAngle + tachoZero;
+            rotating = target != Math.round(angle);
+            direction = 0;
+            targetVel = 0;
+            blockedSince = -1;
+        }
+        while (!immediateReturn && isMoving()) {
+            clock.sleep(1);
+        }
+    }
+
+    public int getTachoCount() {
+        clock.charge(READ_NANOS);
+        synchronized (this) {
+            advance();
+            return (int) Math.round(angle) - tachoZero;
+        }
+    }
+
+    public synchronized void resetTachoCount() {
+        advance();
+        tachoZero = (int) Math.round(angle);
+    }
+
+    public boolean isStalled() {
+        clock.charge(READ_NANOS);
+        synchronized (this) {
+            advance();
+            boolean pushing = rotating || targetVel != 0;
+            return pushing && blockedSince >= 0 && clock.nanoTime() - blockedSince >= STALL_NANOS;
+        }
+    }
+
+    public boolean isMoving() {
+        clock.charge(READ_NANOS);
+        synchronized (this) {
+            advance();
+            return rotating || targetVel != 0 || vel != 0;
+        }
+    }
+
+    public void setStallThreshold(int error, int time) {
+        /* Stalls are detected from the end stops alone */
+    }
+
+    public void synchronizeWith(Motor other) {
+        if (other instanceof SimMotor) {
+            group = new SimMotor[]{this, (SimMotor) other};
+        }
+    }
+
+    public void startSynchronization() {
+        for (SimMotor m : group) {
+            m.batching = true;
+        }
+    }
+
+    public void endSynchronization() {
+        for (SimMotor m : group) {
+            m.batching = false;
+        }
+        clock.charge(COMMAND_NANOS);
+    }
+
+    /* True position in degrees from the lower end stop, free of charge */
+    synchronized double physicalAngle() {
+        advance();
+        return angle;
+    }
+} // end class
+
+
+/*
+ * Ultrasonic sensor looking at a simulated hand. Like the EV3 sensor it only
+ * takes a new measurement every REFRESH_NANOS, adds some noise and now and
+ * then loses the echo altogether.
+ */
+class SimDistance implements DistanceSensor {
+    private static final long READ_NANOS = 1000000; // one fetchSample on the brick
+    private static final long REFRESH_NANOS = 30000000; // sensor measurement period
+    private static final float NOISE = 0.003f; // m, standard deviation
+    private static final float SPIKE_CHANCE = 0.01f;
+    private static final float NO_ECHO = 2.55f; // m, what the sensor reports on a lost echo
+    private static final float SENSOR_OFFSET = 0.035f; // m, sensor to start of plane
+
+    private final SimClock clock;
+    private final SimMotor motorY;
+    private final PadController controller;
+    private final Random random;
+    private float hand = SimulatedHardware.PLANE_Y / 2; // cm
+    private float measured;
+    private long lastRefresh;
+
+    public SimDistance(SimClock clock, SimMotor motorY, PadController controller, long seed) {
+        this.clock = clock;
+        this.motorY = motorY;
+        this.controller = controller;
+        this.random = new Random(seed);
+        this.lastRefresh = clock.nanoTime();
+        this.measured = hand / 100 + SENSOR_OFFSET;
+    }
+
+    public int sampleSize() {
+        return 1;
+    }
+
+    public void fetchSample(float[] sample, int offset) {
+        clock.charge(READ_NANOS);
+        synchronized (this) {
+            refresh();
+            sample[offset] = measured;
+        }
+    }
+
+    /* Takes every measurement the sensor would have made up to now */
+    private void refresh() {
+        long now = clock.nanoTime();
+        if (lastRefresh + REFRESH_NANOS <= now) {
+            float ballY = (float) motorY.physicalAngle() / SimulatedHardware.TACHO_PR_CM_Y;
+            while (lastRefresh + REFRESH_NANOS <= now) {
+                lastRefresh += REFRESH_NANOS;
+                hand = controller.update(lastRefresh, ballY, hand);
+                if (random.nextFloat() < SPIKE_CHANCE) {
+                    measured = NO_ECHO;
+                } else {
+                    measured = hand / 100 + SENSOR_OFFSET + (float) random.nextGaussian() * NOISE;
+                }
+            }
+        }
+    }
+} // end class
+
+
+class SimTouch implements TouchSensor {
+    private volatile boolean pressed;
+
+    public void press() {
+        pressed = true;
+    }
+
+    public int sampleSize() {
+        return 1;
+    }
+
+    public void fetchSample(float[] sample, int offset) {
+        sample[offset] = pressed ? 1 : 0;
+    }
+} // end class
+
+
+/* Accepts drawing calls and only counts them */
+class SimDisplay implements Display {
+    private volatile int drawCalls;
+
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public int getWidth() {
+        return 178;
+    }
+
+    public int getHeight() {
+        return 128;
+    }
+
+    public void clear() {
+        drawCalls++;
+    }
+
+    public void setColor(int color) {
+    }
+
+    public void setFont(int font) {
+    }
+
+    public void setStrokeStyle(int style) {
+    }
+
+    public void drawRect(int x, int y, int width, int height) {
+        drawCalls++;
+    }
+
+    public void fillRect(int x, int y, int width, int height) {
+        drawCalls++;
+    }
+
+    public void drawLine(int x0, int y0, int x1, int y1) {
+        drawCalls++;
+    }
+
+    public void drawString(String string, int x, int y, int anchor) {
+        drawCalls++;
+    }
+
+    public int stringWidth(String string, int font) {
+        switch (font) {
+            case FONT_SMALL:
+                return string.length() * 6;
+            case FONT_LARGE:
+                return string.length() * 20;
+            default:
+                return string.length() * 10;
+        }
+    }
+
+    public int fontHeight(int font) {
+        switch (font) {
+            case FONT_SMALL:
+                return 8;
+            case FONT_LARGE:
+                return 32;
+            default:
+                return 16;
+        }
+    }
+
+    public void blit(byte[] image, int y, int height) {
+        drawCalls++;
+    }
+} // end class
+
+
+/* Takes as long as the real speaker would, without making any sound */
+class SimAudio implements Audio {
+    private final SimClock clock;
+    private volatile int played;
+
+    public SimAudio(SimClock clock) {
+        this.clock = clock;
+    }
+
+    public int getPlayed() {
+        return played;
+    }
+
+    public void playTone(int freq, int duration, int vol) {
+        played++;
+        clock.sleep(duration);
+    }
+
+    public void playTone(int freq, int duration) {
+        playTone(freq, duration, 100);
+    }
+
+    public void playSample(File file, int vol) {
+        played++;
+    }
+
+    public void playSample(byte[] data, int offset, int length, int rate, int vol) {
+        played++;
+        clock.sleep(length * 1000L / rate);
+    }
+} // end class
+
+
+/* Presses start immediately and answers the rematch menu from a budget */
+class SimKeypad implements Keypad {
+    private int rematches;
+
+    public SimKeypad(int rematches) {
+        this.rematches = rematches;
+    }
+
+    public boolean waitForAnyPress(int timeout) {
+        return true;
+    }
+
+    public int select(String[] items, String title, int timeout) {
+        if (rematches > 0) {
+            rematches--;
+            return 0;
+        }
+        return 1;
+    }
+} // end class
@@ -0,0 +1,19 @@
+/*
+ * Scripted hand that sweeps across the whole plane and back at a steady
+ * pace, whatever the ball does. A fixed baseline opponent.
+ */
+class SweepPadController implements PadController {
+    private final long period; // ns for one sweep there and back
+    private final long phase; // ns
+
+    public SweepPadController(float periodSeconds, float phase) {
+        this.period = (long) (periodSeconds * 1e9);
+        this.phase = (long) (phase * this.period);
+    }
+
+    public float update(long nanos, float ballY, float hand) {
+        float reach = SimulatedHardware.PLANE_Y - SimulatedHardware.PAD_WIDTH;
+        float t = ((nanos + phase) % period) / (float) period; // 0 .. 1
+        return reach * (t < 0.5f ? 2 * t : 2 - 2 * t);
+    }
+} // end class
@@ -0,0 +1,131 @@
+import java.util.Random;
+
+/*
+ * Runs many simulated tables at once, to rehearse a tournament or see how
+ * many tables a machine carries. Every table is a Pong.play of its own on
+ * its own simulated brick, with nothing shared but the CPU: the game keeps
+ * no state in statics. For each table count it reports how many matches a
+ * second the host got through, and the real time each table needed per
+ * tick of ballLoop, as a distribution over the tables.
+ *
+ *   TableHost [--tables 1,4,16,64,256] [--matches n] [--seed s]
+ *             [--players tracking|expert|sweep]
+ *
+ * --matches is per table, played back to back as rematches.
+ *
+ * Each table's game thread owns its simulated clock, which waits on that
+ * thread to move time, so every table has a thread of its own rather than
+ * a task in a shared pool. A table plays the match Pong --sim plays with
+ * its seed, however many tables share the cores; they only take longer.
+ */
+class TableHost {
+    public static void main(String[] args) throws Exception {
+        int[] tableCounts = {1, 4, 16, 64, 256};
+        int matches = 1;
+        long seed = 0;
+        String players = "tracking";
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if (args[i].equals("--tables")) {
+                String[] counts = value.split(",");
+                tableCounts = new int[counts.length];
+                for (int j = 0; j < counts.length; j++) {
+                    tableCounts[j] = Integer.parseInt(counts[j].trim());
+                }
+            } else if (args[i].equals("--matches")) {
+                matches = Integer.parseInt(value);
+            } else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(value);
+            } else if (args[i].equals("--players")) {
+                players = value;
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        GameSettings settings = new GameSettings();
+        settings.dumpMetrics = false; // hundreds of tables would bury the report
+        System.out.println("Hosting " + matches + " matches per table on "
+                + Runtime.getRuntime().availableProcessors() + " cores, " + players + " players");
+        System.out.printf("%6s %8s %8s %10s %10s   %-22s %8s %9s %9s %9s %9s %9s %9s   (us)%n",
+                "tables", "matches", "real s", "matches/s", "ticks/s",
+                "", "count", "min", "p50", "p90", "p99", "max", "mean");
+        for (int tables : tableCounts) {
+            host(tables, matches, seed, players, settings);
+        }
+        System.exit(0);
+    } // end main
+
+    /* Plays matches on every one of tables at once and prints one line */
+    private static void host(int tables, int matches, long seed, String players, GameSettings settings)
+            throws InterruptedException {
+        Table[] table = new Table[tables];
+        Random seeds = new Random(seed);
+        for (int i = 0; i < tables; i++) {
+            table[i] = new Table(i + 1, seeds.nextLong(), matches, players, settings);
+        }
+        long start = System.nanoTime();
+        for (Table t : table) {
+            t.start();
+        }
+        for (Table t : table) {
+            t.join();
+        }
+        long realNanos = System.nanoTime() - start;
+
+        LatencyHistogram tickTime = new LatencyHistogram("real time per tick");
+        long played = 0;
+        long ticks = 0;
+        for (Table t : table) {
+            if (t.failure != null) {
+                throw new IllegalStateException("Table " + t.number + " failed", t.failure);
+            }
+            played += t.stats.getMatchesWon(1) + t.stats.getMatchesWon(2);
+            ticks += t.stats.getTicks();
+            if (t.stats.getTicks() > 0) {
+                tickTime.record(t.realNanos / t.stats.getTicks());
+            }
+        }
+        double realSec = realNanos / 1e9;
+        System.out.printf("%6d %8d %8.1f %10.2f %10.0f   ", tables, played, realSec, played / realSec,
+                ticks / realSec);
+        tickTime.print(System.out);
+    }
+} // end class
+
+
+/* One table: its own simulated brick and game thread, owner of the brick's clock */
+class Table extends Thread {
+    final int number;
+    private final long seed;
+    private final int matches;
+    private final String players;
+    private final GameSettings settings;
+    final MatchStats stats;
+    long realNanos; // read after join
+    Throwable failure;
+
+    public Table(int number, long seed, int matches, String players, GameSettings settings) {
+        super("table " + number);
+        this.number = number;
+        this.seed = seed;
+        this.matches = matches;
+        this.players = players;
+        this.settings = settings;
+        this.stats = new MatchStats(MatchStats.maxPoints(matches, settings.maxScore));
+    }
+
+    public void run() {
+        long start = System.nanoTime();
+        try {
+			/* The clock belongs to the thread that creates it */
+            SimulatedHardware hardware = new SimulatedHardware(seed, matches - 1,
+                    BatchSimulator.player(players, seed, 1), BatchSimulator.player(players, seed, 2));
+            Pong.play(hardware, null, settings, stats);
+        } catch (Throwable t) {
+            failure = t;
+        }
+        realNanos = System.nanoTime() - start;
+    }
+} // end class
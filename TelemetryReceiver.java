@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/*
+ * The PC end of TelemetrySender: connects to the brick and prints a line
+ * for every batch it receives, with the latest ball and pad positions, the
+ * loop rate over the batch and the score. It keeps trying to connect until
+ * the brick listens, so it can be started first.
+ *
+ *   TelemetryReceiver [host] [port]
+ *
+ * The host is the brick, 10.0.1.1 over USB or Bluetooth by default. To try
+ * it without a brick, run the simulator on the same machine:
+ *
+ *   TelemetryReceiver localhost &
+ *   Pong --sim 7 --telemetry 5555
+ */
+class TelemetryReceiver {
+    private static final long RETRY_MS = 100;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = (args.length > 0) ? args[0] : "10.0.1.1";
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : TelemetrySender.DEFAULT_PORT;
+
+        SocketChannel channel = null;
+        while (channel == null) {
+            try {
+                channel = SocketChannel.open(new InetSocketAddress(host, port));
+            } catch (IOException e) {
+                Thread.sleep(RETRY_MS);
+            }
+        }
+        System.out.println("Connected to " + host + ":" + port);
+        try {
+            new TelemetryReceiver().receive(channel);
+        } finally {
+            channel.close();
+        }
+        System.out.println("Stream ended");
+    } // end main
+
+    private final ByteBuffer in = ByteBuffer.allocate(64 * TelemetrySender.FRAME_SIZE);
+    private long firstNanos = -1;
+    private int ticks; // since the last STATUS
+    private long periodSum; // us
+    private int ballX;
+    private int ballY;
+    private int pad1; // Q16.16
+    private int pad2;
+
+    /* Reads until the brick closes the connection */
+    public void receive(SocketChannel channel) throws IOException {
+        while (channel.read(in) >= 0) {
+            in.flip();
+            while (in.remaining() >= TelemetrySender.FRAME_SIZE) {
+                frame(in.position());
+                in.position(in.position() + TelemetrySender.FRAME_SIZE);
+            }
+            in.compact();
+        }
+    }
+
+    private void frame(int at) {
+        long nanos = in.getLong(at + 4);
+        if (firstNanos < 0) {
+            firstNanos = nanos;
+        }
+        switch (in.getInt(at)) {
+            case TelemetrySender.TICK:
+                ballX = in.getInt(at + 12);
+                ballY = in.getInt(at + 16);
+                pad1 = in.getInt(at + 20);
+                pad2 = in.getInt(at + 24);
+                ticks++;
+                periodSum += in.getInt(at + 28);
+                break;
+            case TelemetrySender.STATUS:
+                double rate = (periodSum > 0) ? ticks * 1e6 / periodSum : 0;
+                System.out.printf("%8.1f s  score %d-%d  ball %5d %5d of %d x %d  pads %7.1f %7.1f"
+                                + "  loop %4.0f / s  %3d ticks  %d dropped%n",
+                        (nanos - firstNanos) / 1e9, in.getInt(at + 12), in.getInt(at + 16),
+                        ballX, ballY, in.getInt(at + 24), in.getInt(at + 28),
+                        Fixed.toDouble(pad1), Fixed.toDouble(pad2), rate, ticks, in.getInt(at + 20));
+                ticks = 0;
+                periodSum = 0;
+                break;
+            default:
+                throw new IllegalStateException("Unknown frame type " + in.getInt(at));
+        }
+    }
+} // end class
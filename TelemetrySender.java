@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/*
+ * Streams the table to a TelemetryReceiver on a PC. The brick listens on
+ * a TCP port and serves one receiver at a time. The game thread packs each
+ * tick into a fixed size frame in a preallocated ring; this thread sends
+ * what is there every BATCH_MS, so there are a few network writes a second
+ * whatever the tick rate. The game thread never waits for the network:
+ * when the ring is full the oldest frames are overwritten, and this thread
+ * skips and counts them. Nothing is kept while no receiver is connected.
+ *
+ * Each frame is FRAME_SIZE bytes, big-endian: the type in byte 0, the clock
+ * time in bytes 4-11, then five 32-bit fields.
+ *
+ *   TICK    ballX, ballY (tacho), pad1, pad2 (Q16.16 tacho), loop period (us)
+ *   STATUS  score 1, score 2, frames dropped so far, maxX, maxY (tacho)
+ *
+ * Each batch ends with one STATUS frame.
+ */
+class TelemetrySender extends Thread {
+    static final int TICK = 1;
+    static final int STATUS = 2;
+    static final int FRAME_SIZE = 32; // bytes
+    static final int DEFAULT_PORT = 5555;
+    private static final int CAPACITY = 1024; // frames, power of two; 2 s of ticks at the tightest rate
+    private static final long BATCH_MS = 250;
+
+    private final int port;
+    private final Clock clock;
+    private final ByteBuffer ring = ByteBuffer.allocate(CAPACITY * FRAME_SIZE);
+    private final ByteBuffer slots = ring.duplicate(); // this thread's view for copying out
+    private final ByteBuffer batch = ByteBuffer.allocateDirect((CAPACITY + 1) * FRAME_SIZE);
+    private volatile long tail; // next frame to fill, producer only
+    private volatile long head; // next frame to send, this thread only
+    private volatile int score; // score 1 in the high half, score 2 in the low
+    private volatile int maxX;
+    private volatile int maxY;
+    private long dropped; // this thread only
+    private SocketChannel receiver;
+    private Budget budget = new Budget("telemetry", Long.MAX_VALUE);
+
+    /* port 0 sends nothing */
+    public TelemetrySender(int port, Clock clock) {
+        this.port = port;
+        this.clock = clock;
+        batch.flip(); // nothing to send yet
+    }
+
+    public void instrument(Budget budget) {
+        this.budget = budget;
+    }
+
+    /* Game thread: the size of the table, in tacho */
+    public void field(float maxX, float maxY) {
+        this.maxX = (int) maxX;
+        this.maxY = (int) maxY;
+    }
+
+    /* Game thread */
+    public void score(int score1, int score2) {
+        score = (score1 << 16) | (score2 & 0xffff);
+    }
+
+    /* Game thread: one tick of ballLoop and how long since the previous one */
+    public void tick(TickSnapshot tick, long periodNanos) {
+        if (port == 0) {
+            return;
+        }
+        long t = tail;
+        int at = (int) (t & (CAPACITY - 1)) * FRAME_SIZE;
+        ring.putInt(at, TICK);
+        ring.putLong(at + 4, tick.nanos);
+        ring.putInt(at + 12, tick.ballX);
+        ring.putInt(at + 16, tick.ballY);
+        ring.putInt(at + 20, tick.pad1);
+        ring.putInt(at + 24, tick.pad2);
+        ring.putInt(at + 28, (int) Math.min(periodNanos / 1000, Integer.MAX_VALUE));
+        tail = t + 1;
+    }
+
+    /*
+     * Copies the frames not yet sent into batch, then a STATUS frame. The
+     * game thread may be overwriting the oldest ones meanwhile; those are
+     * checked for afterwards and skipped.
+     */
+    private void fillBatch() {
+        long t = tail;
+        long from = Math.max(head, t - CAPACITY + 1); // the frame at t - CAPACITY may be half written
+        batch.clear();
+        for (long i = from; i < t; ) {
+            int slot = (int) (i & (CAPACITY - 1));
+            int count = (int) Math.min(t - i, CAPACITY - slot); // up to the end of the ring
+            slots.limit((slot + count) * FRAME_SIZE).position(slot * FRAME_SIZE);
+            batch.put(slots);
+            i += count;
+        }
+        long before = head;
+        head = t; // a volatile write, so the copy is done before tail is read again
+        long valid = tail - CAPACITY + 1;
+        int skip = (int) Math.max(0, Math.min(valid, t) - from);
+        dropped += (from - before) + skip;
+
+        int s = score;
+        batch.putInt(STATUS);
+        batch.putLong(clock.nanoTime());
+        batch.putInt(s >>> 16);
+        batch.putInt(s & 0xffff);
+        batch.putInt((int) Math.min(dropped, Integer.MAX_VALUE));
+        batch.putInt(maxX);
+        batch.putInt(maxY);
+        batch.flip();
+        batch.position(skip * FRAME_SIZE);
+    }
+
+    private void disconnect() {
+        try {
+            receiver.close();
+        } catch (IOException e) {
+            // gone either way
+        }
+        receiver = null;
+    }
+
+    public void run() {
+        if (port == 0) {
+            return;
+        }
+        ServerSocketChannel server;
+        try {
+            server = ServerSocketChannel.open();
+            server.socket().setReuseAddress(true);
+            server.socket().bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+        } catch (IOException e) {
+            System.out.println("Telemetry off, cannot listen on port " + port + ": " + e.getMessage());
+            return;
+        }
+        try {
+            while (!isInterrupted()) {
+                clock.sleep(BATCH_MS);
+                if (receiver == null) {
+                    receiver = server.accept();
+                    if (receiver == null) {
+                        head = tail; // nobody watching
+                        continue;
+                    }
+                    receiver.configureBlocking(false);
+                    batch.clear().flip();
+                }
+                if (!batch.hasRemaining()) {
+                    fillBatch();
+                }
+                budget.defer(clock);
+				/* A slow receiver keeps the rest of the batch for next time, and the ring fills up */
+                long before = System.nanoTime();
+                try {
+                    receiver.write(batch);
+                } catch (IOException e) {
+                    disconnect();
+                }
+                budget.check(System.nanoTime() - before);
+            }
+        } catch (IOException e) {
+            System.out.println("Telemetry stopped: " + e.getMessage());
+        } finally {
+            if (receiver != null) {
+                disconnect();
+            }
+            try {
+                server.close();
+            } catch (IOException e) {
+                // nothing left to send
+            }
+        }
+    }
+} // end class
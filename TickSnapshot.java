@@ -0,0 +1,17 @@
+/* Everything ballLoop needs to decide one tick, read from the hardware once */
+class TickSnapshot {
+    public int ballX; // tacho
+    public int ballY; // tacho
+    public int pad1; // tacho, Q16.16, extrapolated to nanos
+    public int pad2; // tacho, Q16.16, extrapolated to nanos
+    public long nanos; // clock time of the ball reading
+
+    /* The ball is read first, then the clock; the pads are extrapolated to that reading */
+    public void capture(Ball ball, Player p1, Player p2, Clock clock) {
+        ballX = ball.getXPos();
+        ballY = ball.getYPos();
+        nanos = clock.nanoTime();
+        pad1 = p1.getPos(nanos);
+        pad2 = p2.getPos(nanos);
+    }
+} // end class
@@ -0,0 +1,5 @@
+interface TouchSensor {
+    int sampleSize();
+
+    void fetchSample(float[] sample, int offset); // > 0 when pressed
+} // end interface
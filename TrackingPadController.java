@@ -0,0 +1,35 @@
+import java.util.Random;
+
+/*
+ * Follows the ball with a limited hand speed and a wandering aim error, so
+ * fast balls are missed now and then.
+ */
+class TrackingPadController implements PadController {
+    private static final long AIM_PERIOD = 500000000L; // ns between new aim errors
+    private final Random random;
+    private final float maxSpeed; // cm / sec
+    private final float aimError; // cm, standard deviation
+    private float aim;
+    private long lastNanos = -1;
+    private long nextAim;
+
+    public TrackingPadController(long seed, float maxSpeed, float aimError) {
+        this.random = new Random(seed);
+        this.maxSpeed = maxSpeed;
+        this.aimError = aimError;
+    }
+
+    public float update(long nanos, float ballY, float hand) {
+        if (nanos >= nextAim) {
+            aim = (float) random.nextGaussian() * aimError;
+            nextAim = nanos + AIM_PERIOD;
+        }
+        float dt = (lastNanos < 0) ? 0 : (nanos - lastNanos) / 1e9f;
+        lastNanos = nanos;
+
+        float target = ballY - SimulatedHardware.PAD_WIDTH / 2 + aim;
+        float maxStep = maxSpeed * dt;
+        float step = Math.max(-maxStep, Math.min(maxStep, target - hand));
+        return hand + step;
+    }
+} // end class
@@ -0,0 +1,31 @@
+import static java.lang.Math.*;
+
+/*
+ * Cosine and sine in half-degree steps from -90 to 90 degrees, computed
+ * once; the EV3 has no FPU, so every Math.cos during play is expensive.
+ * The values are Q16.16, see Fixed.
+ */
+class TrigTable {
+    static final int STEPS_PER_DEGREE = 2;
+    static final int MAX_ANGLE = 90;
+    static final int[] COS = new int[2 * MAX_ANGLE * STEPS_PER_DEGREE + 1];
+    static final int[] SIN = new int[2 * MAX_ANGLE * STEPS_PER_DEGREE + 1];
+
+    static {
+        for (int i = 0; i < COS.length; i++) {
+            double rad = PI * (i - MAX_ANGLE * STEPS_PER_DEGREE) / (180.0 * STEPS_PER_DEGREE);
+            COS[i] = Fixed.fromDouble(cos(rad));
+            SIN[i] = Fixed.fromDouble(sin(rad));
+        }
+    }
+
+    /* Table index of the nearest step, clamped to the table */
+    static int index(double degrees) {
+        return indexOfSteps((int) round(degrees * STEPS_PER_DEGREE));
+    }
+
+    /* Table index of an angle counted in steps, clamped to the table */
+    static int indexOfSteps(int steps) {
+        return max(0, min(COS.length - 1, steps + MAX_ANGLE * STEPS_PER_DEGREE));
+    }
+} // end class
@@ -0,0 +1,105 @@
+import java.util.Random;
+
+import pong.benchmarks.GameLoop;
+
+/*
+ * The game loop's pieces on a calibrated simulated table, mid-rally. It
+ * only makes calls whose source compiles against the game from before
+ * Q16.16 as well, so the benchmarks measure whichever tree the game module
+ * is built from.
+ */
+public class GameLoopFixture implements GameLoop {
+    private static final int POSITIONS = 1024; // power of two
+
+    private final Clock clock;
+    private final GameSettings settings = new GameSettings();
+    private final Ball ball;
+    private final Pad pad1;
+    private final Player p1;
+    private final Player p2;
+    private final Referee referee;
+    private final CollisionScheduler scheduler;
+    private final TickSnapshot tick = new TickSnapshot();
+    private final TickSnapshot[] ticks = new TickSnapshot[POSITIONS]; // ball spread over the table, edges included
+    private final long now;
+    private int n; // calls so far, picks the input of the next one
+
+    public GameLoopFixture() {
+        SimulatedHardware hardware = new SimulatedHardware(1, 0);
+        clock = hardware.clock();
+        float tachoPrCmY = SimulatedHardware.TACHO_PR_CM_Y;
+        float maxX = SimulatedHardware.PLANE_X * SimulatedHardware.TACHO_PR_CM_X;
+        float maxY = SimulatedHardware.PLANE_Y * tachoPrCmY;
+
+        ball = new Ball(SimulatedHardware.PLANE_X, SimulatedHardware.PLANE_Y,
+                hardware.motorX(), hardware.motorY(), clock, hardware.random());
+        ball.kickOff(0);
+        ball.setVel(settings.ballSpeed);
+
+        /* Pads that are never started: getPos works from their first sample */
+        pad1 = new Pad(SimulatedHardware.PAD_WIDTH, hardware.player1Sensor(), tachoPrCmY, clock, new MedianFilter(3));
+        Pad pad2 = new Pad(SimulatedHardware.PAD_WIDTH, hardware.player2Sensor(), tachoPrCmY, clock, new MedianFilter(3));
+        p1 = new Player(pad1);
+        p2 = new Player(pad2);
+        referee = new Referee(maxX, maxY, settings.padTol, settings.wallTol, p1.getWidth());
+        scheduler = new CollisionScheduler(clock,
+                settings.padTol, maxX - settings.padTol, settings.wallTol, maxY - settings.wallTol);
+
+        now = clock.nanoTime();
+        Random random = new Random(1);
+        for (int i = 0; i < POSITIONS; i++) {
+            ticks[i] = new TickSnapshot();
+            ticks[i].ballX = random.nextInt((int) maxX + 1);
+            ticks[i].ballY = random.nextInt((int) maxY + 1);
+            ticks[i].pad1 = p1.getPos(now);
+            ticks[i].pad2 = p2.getPos(now);
+            ticks[i].nanos = now;
+        }
+    }
+
+    public double tick() {
+        tick.capture(ball, p1, p2, clock);
+        referee.reset();
+        return referee.decide(tick) + scheduler.predict(tick.ballX, tick.ballY, ball.getXVel(), ball.getYVel());
+    }
+
+    public double decide() {
+        referee.reset();
+        return referee.decide(ticks[n++ & (POSITIONS - 1)]);
+    }
+
+    public double predict() {
+        TickSnapshot t = ticks[n++ & (POSITIONS - 1)];
+        return scheduler.predict(t.ballX, t.ballY, ball.getXVel(), ball.getYVel());
+    }
+
+    /* hitPad only uses the ratio of its arguments, so any unit does */
+    public double hitPad() {
+        ball.hitPad(n++ & 127, 128);
+        return ball.getYVel();
+    }
+
+    public double hitWall() {
+        ball.hitWall();
+        return ball.getYVel();
+    }
+
+    public double setVel() {
+        ball.setVel(settings.ballSpeed + (n++ & 15) * settings.increment);
+        return ball.getXVel();
+    }
+
+    public double padPos() {
+        return pad1.getPos(now + (n++ & 63) * 1000000L);
+    }
+
+    public double trigTable() {
+        int j = TrigTable.index((n++ & 255) * 140.0 / 255 - 70);
+        return TrigTable.COS[j] + TrigTable.SIN[j];
+    }
+
+    public double trigMath() {
+        double rad = Math.toRadians((n++ & 255) * 140.0 / 255 - 70);
+        return Math.cos(rad) + Math.sin(rad);
+    }
+} // end class
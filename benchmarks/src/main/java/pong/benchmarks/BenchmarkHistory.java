@@ -0,0 +1,118 @@
+package pong.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs GameLoopBenchmark and keeps its results over time. Every run is
+ * appended to a history file and compared with the median of the last few
+ * runs of the same benchmark, which JIT noise in any single run does not
+ * move much. A benchmark that got more than REGRESSION times slower makes
+ * the run exit with status 1.
+ *
+ *   BenchmarkHistory [history.csv] [benchmark regex]
+ */
+public class BenchmarkHistory {
+    private static final double REGRESSION = 1.25; // times the recent ns / op
+    private static final int HISTORY_WINDOW = 5; // runs the recent ns / op is the median of
+    private static final String DEFAULT_HISTORY = "benchmarks.csv";
+    private static final String ALLOCATION = "gc.alloc.rate.norm"; // bytes / op, from GCProfiler
+
+    public static void main(String[] args) throws Exception {
+        File history = new File(args.length > 0 ? args[0] : DEFAULT_HISTORY);
+        String include = GameLoopBenchmark.class.getName() + "." + (args.length > 1 ? args[1] : "");
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .build();
+        List<RunResult> results = new ArrayList<RunResult>(new Runner(options).run());
+
+        Map<String, Double> previous = lastResults(history);
+        long timestamp = System.currentTimeMillis();
+        boolean regressed = false;
+        PrintWriter out = new PrintWriter(new FileWriter(history, true));
+        try {
+            System.out.println();
+            System.out.printf("%-24s %12s %10s %12s %10s%n", "benchmark", "ns / op", "+-", "bytes / op", "change");
+            for (RunResult result : results) {
+                String name = result.getParams().getBenchmark();
+                name = name.substring(name.lastIndexOf('.') + 1);
+                Result time = result.getPrimaryResult();
+                Result allocation = result.getSecondaryResults().get(ALLOCATION);
+                double bytesPerOp = (allocation != null) ? allocation.getScore() : -1;
+                Double before = previous.get(name);
+                String change = "";
+                if (before != null) {
+                    double ratio = time.getScore() / before;
+                    change = String.format("%+.0f%%", (ratio - 1) * 100);
+                    if (ratio > REGRESSION) {
+                        change += " REGRESSION";
+                        regressed = true;
+                    }
+                }
+                System.out.printf("%-24s %12.1f %10.1f %12s %10s%n", name, time.getScore(), time.getScoreError(),
+                        (bytesPerOp < 0) ? "n/a" : String.format("%.1f", bytesPerOp), change);
+                out.println(timestamp + "," + name + "," + time.getScore() + "," + bytesPerOp);
+            }
+        } finally {
+            out.close();
+        }
+        System.exit(regressed ? 1 : 0);
+    } // end main
+
+    /* Median ns / op of each benchmark's last HISTORY_WINDOW runs */
+    private static Map<String, Double> lastResults(File history) throws IOException {
+        Map<String, List<Double>> runs = new HashMap<String, List<Double>>();
+        Map<String, Double> medians = new HashMap<String, Double>();
+        if (!history.isFile()) {
+            return medians;
+        }
+        BufferedReader in = new BufferedReader(new FileReader(history));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length < 3) {
+                    continue;
+                }
+                try {
+                    double nsPerOp = Double.parseDouble(fields[2]);
+                    List<Double> list = runs.get(fields[1]);
+                    if (list == null) {
+                        list = new ArrayList<Double>();
+                        runs.put(fields[1], list);
+                    }
+                    list.add(nsPerOp);
+                } catch (NumberFormatException e) {
+                    // Skip a damaged line
+                }
+            }
+        } finally {
+            in.close();
+        }
+        for (Map.Entry<String, List<Double>> e : runs.entrySet()) {
+            List<Double> list = e.getValue();
+            List<Double> recent = new ArrayList<Double>(
+                    list.subList(Math.max(0, list.size() - HISTORY_WINDOW), list.size()));
+            Collections.sort(recent);
+            medians.put(e.getKey(), recent.get(recent.size() / 2));
+        }
+        return medians;
+    }
+} // end class
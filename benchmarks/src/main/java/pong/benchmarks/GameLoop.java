@@ -0,0 +1,28 @@
+package pong.benchmarks;
+
+/*
+ * One call of each game loop path GameLoopBenchmark times. The game lives
+ * in the default package, which a JMH benchmark cannot, so the benchmark
+ * only sees the game through this; each call returns a value of its work
+ * for JMH to consume.
+ */
+public interface GameLoop {
+    /* One pass of ballLoop: read the ball and pads, decide, predict the next contact */
+    double tick();
+
+    double decide();
+
+    double predict();
+
+    double hitPad();
+
+    double hitWall();
+
+    double setVel();
+
+    double padPos();
+
+    double trigTable();
+
+    double trigMath();
+} // end interface
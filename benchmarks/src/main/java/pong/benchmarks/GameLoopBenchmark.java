@@ -0,0 +1,80 @@
+package pong.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The paths the game loop runs every tick, and the contacts between ticks,
+ * measured against the simulated brick on a PC. Run with the gc profiler
+ * (BenchmarkHistory does) for the bytes each call allocates, which in the
+ * game loop should be none.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+public class GameLoopBenchmark {
+    private GameLoop loop;
+
+    @Setup
+    public void setUp() throws Exception {
+        loop = (GameLoop) Class.forName("GameLoopFixture").getConstructor().newInstance();
+    }
+
+    @Benchmark
+    public double tick() {
+        return loop.tick();
+    }
+
+    @Benchmark
+    public double refereeDecide() {
+        return loop.decide();
+    }
+
+    @Benchmark
+    public double collisionScheduler() {
+        return loop.predict();
+    }
+
+    @Benchmark
+    public double ballHitPad() {
+        return loop.hitPad();
+    }
+
+    @Benchmark
+    public double ballHitWall() {
+        return loop.hitWall();
+    }
+
+    @Benchmark
+    public double ballSetVel() {
+        return loop.setVel();
+    }
+
+    @Benchmark
+    public double padGetPos() {
+        return loop.padPos();
+    }
+
+    @Benchmark
+    public double trigTable() {
+        return loop.trigTable();
+    }
+
+    @Benchmark
+    public double trigMath() {
+        return loop.trigMath();
+    }
+} // end class